@@ -1,4 +1,5 @@
 import woodland.GameServer;
+import woodland.NioTransport;
 
 /**
  * The main class responsible for initializing and starting the GameServer.
@@ -8,16 +9,64 @@ import woodland.GameServer;
 public class GameServerMain {
     /**
      * The main method used to start the GameServer.
-     * 
+     *
      * @param args Command line arguments where:
      *             args[0] is the port number on which the server should run.
      *             args[1] is the seed used for generating game-specific data.
+     *             Any further arguments are options of the form
+     *             {@code --name=value}:
+     *             {@code --transport=blocking} (the default) serves each
+     *             connection on its own virtual thread,
+     *             {@code --transport=nio} multiplexes connections over a few
+     *             selector event loops, and {@code --event-loops=n} sets how
+     *             many event loops the nio transport uses.
+     *             {@code --compression-threshold=n} sets the smallest response,
+     *             in bytes, compressed for clients that accept gzip or deflate.
+     *             {@code --max-games=n} sets the most games hosted at once and
+     *             {@code --max-pieces=n} the most creatures and spells a
+     *             created game may have.
      */
     public static void main(String[] args) {
         int port = Integer.parseInt(args[0]);
         long seed = Long.parseLong(args[1]);
+        String transport = "blocking";
+        int eventLoops = Runtime.getRuntime().availableProcessors();
+        Integer compressionThreshold = null;
+        Integer maxGames = null;
+        Integer maxPieces = null;
+
+        for (int i = 2; i < args.length; i++) {
+            if (args[i].startsWith("--transport=")) {
+                transport = args[i].substring("--transport=".length());
+            } else if (args[i].startsWith("--event-loops=")) {
+                eventLoops = Integer.parseInt(args[i].substring("--event-loops=".length()));
+            } else if (args[i].startsWith("--compression-threshold=")) {
+                compressionThreshold = Integer.parseInt(args[i].substring("--compression-threshold=".length()));
+            } else if (args[i].startsWith("--max-games=")) {
+                maxGames = Integer.parseInt(args[i].substring("--max-games=".length()));
+            } else if (args[i].startsWith("--max-pieces=")) {
+                maxPieces = Integer.parseInt(args[i].substring("--max-pieces=".length()));
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
 
         GameServer server = new GameServer(port, seed);
-        server.runServer(port);
+        if (compressionThreshold != null) {
+            server.setCompressionThreshold(compressionThreshold);
+        }
+        if (maxGames != null) {
+            server.setMaxGames(maxGames);
+        }
+        if (maxPieces != null) {
+            server.setMaxPieces(maxPieces);
+        }
+        if (transport.equals("nio")) {
+            new NioTransport(server, eventLoops).runServer(port);
+        } else if (transport.equals("blocking")) {
+            server.runServer(port);
+        } else {
+            throw new IllegalArgumentException("Unknown transport: " + transport);
+        }
     }
 }
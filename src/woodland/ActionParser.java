@@ -0,0 +1,324 @@
+package woodland;
+
+import java.nio.charset.StandardCharsets;
+
+import woodland.Spells.Spell;
+
+/**
+ * Decodes the common form of an action body straight from the bytes of the
+ * request, without building a tree of JSON values or copying the body into a
+ * string. Only the fields of the action schema are understood: "action",
+ * "animal", "spell" and "toSquare" holding "row" and "col". Names are matched
+ * against the known animals and spells in place, so a decoded command shares
+ * their strings.
+ *
+ * Anything this parser is not sure about, such as an escape in a string, a
+ * field outside the schema, a repeated field, a number with a fraction or an
+ * unknown name, makes it give up, and the caller falls back to the general JSON
+ * parser. It never rejects a body the general parser would accept, and when it
+ * accepts a body it decodes the same command.
+ */
+final class ActionParser {
+    private static final byte[][] ANIMAL_NAMES = animalNames();
+    private static final Spell[] SPELLS = Spell.values();
+    private static final byte[][] SPELL_NAMES = new byte[SPELLS.length][];
+    private static final byte[] ACTION = ascii("action");
+    private static final byte[] ANIMAL = ascii("animal");
+    private static final byte[] SPELL = ascii("spell");
+    private static final byte[] TO_SQUARE = ascii("toSquare");
+    private static final byte[] ROW = ascii("row");
+    private static final byte[] COL = ascii("col");
+    private static final byte[] MOVE = ascii("move");
+    private static final int MAX_DIGITS = 9;
+
+    static {
+        for (int i = 0; i < SPELLS.length; i++) {
+            SPELL_NAMES[i] = ascii(SPELLS[i].getName());
+        }
+    }
+
+    private final byte[] json;
+    private int pos;
+
+    /**
+     * Creates a parser over the bytes of an action body.
+     *
+     * @param json The UTF-8 bytes of the body.
+     */
+    private ActionParser(byte[] json) {
+        this.json = json;
+    }
+
+    /**
+     * Decodes an action body if it is in the common form.
+     *
+     * @param json The UTF-8 bytes of the body.
+     * @return The decoded command, or null if the body must be decoded by the
+     *         general JSON parser instead.
+     */
+    static GameCommand parse(byte[] json) {
+        return new ActionParser(json).parseAction();
+    }
+
+    /**
+     * Decodes the top level object of the action.
+     *
+     * @return The decoded command, or null to fall back.
+     */
+    private GameCommand parseAction() {
+        int actionStart = -1;
+        int actionEnd = -1;
+        int animal = -1;
+        int spell = -1;
+        boolean spellSeen = false;
+        boolean squareSeen = false;
+        int row = 0;
+        int col = 0;
+        boolean rowSeen = false;
+        boolean colSeen = false;
+
+        if (!expect('{')) {
+            return null;
+        }
+        if (peek() != '}') {
+            do {
+                int keyStart = stringStart();
+                int keyEnd = stringEnd(keyStart);
+                if (keyEnd < 0 || !expect(':')) {
+                    return null;
+                }
+                if (is(keyStart, keyEnd, ACTION) && actionStart < 0) {
+                    actionStart = stringStart();
+                    actionEnd = stringEnd(actionStart);
+                    if (actionEnd < 0) {
+                        return null;
+                    }
+                } else if (is(keyStart, keyEnd, ANIMAL) && animal < 0) {
+                    int start = stringStart();
+                    animal = lookup(start, stringEnd(start), ANIMAL_NAMES);
+                    if (animal < 0) {
+                        return null;
+                    }
+                } else if (is(keyStart, keyEnd, SPELL) && !spellSeen) {
+                    int start = stringStart();
+                    spell = lookup(start, stringEnd(start), SPELL_NAMES);
+                    if (spell < 0) {
+                        return null;
+                    }
+                    spellSeen = true;
+                } else if (is(keyStart, keyEnd, TO_SQUARE) && !squareSeen) {
+                    squareSeen = true;
+                    if (!expect('{')) {
+                        return null;
+                    }
+                    do {
+                        int nameStart = stringStart();
+                        int nameEnd = stringEnd(nameStart);
+                        if (nameEnd < 0 || !expect(':')) {
+                            return null;
+                        }
+                        if (is(nameStart, nameEnd, ROW) && !rowSeen) {
+                            row = integer();
+                            rowSeen = true;
+                        } else if (is(nameStart, nameEnd, COL) && !colSeen) {
+                            col = integer();
+                            colSeen = true;
+                        } else {
+                            return null;
+                        }
+                        if (pos < 0) {
+                            return null;
+                        }
+                    } while (expect(','));
+                    if (!expect('}')) {
+                        return null;
+                    }
+                } else {
+                    return null;
+                }
+            } while (expect(','));
+        }
+        if (!expect('}') || peek() != -1) {
+            return null;
+        }
+
+        if (actionStart < 0 || animal < 0) {
+            return null;
+        }
+        String animalName = Game.animalName(animal);
+        if (is(actionStart, actionEnd, MOVE)) {
+            if (!rowSeen || !colSeen) {
+                return null;
+            }
+            return new GameCommand(GameCommand.Type.MOVE, animalName, animal, row, col, null, null);
+        } else if (is(actionStart, actionEnd, SPELL)) {
+            if (!spellSeen) {
+                return null;
+            }
+            return new GameCommand(GameCommand.Type.SPELL, animalName, animal, -1, -1, SPELLS[spell].getName(),
+                    SPELLS[spell]);
+        }
+        return new GameCommand(GameCommand.Type.OTHER, animalName, animal, -1, -1, null, null);
+    }
+
+    /**
+     * Skips whitespace and consumes the given character if it comes next.
+     *
+     * @param c The character expected.
+     * @return true if it was there, false otherwise.
+     */
+    private boolean expect(char c) {
+        if (peek() == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Skips whitespace and returns the next character without consuming it.
+     *
+     * @return The next byte, or -1 at the end of the body or after the parser
+     *         has given up.
+     */
+    private int peek() {
+        if (pos < 0) {
+            return -1;
+        }
+        while (pos < json.length) {
+            byte b = json[pos];
+            if (b != ' ' && b != '\t' && b != '\n' && b != '\r') {
+                return b;
+            }
+            pos++;
+        }
+        return -1;
+    }
+
+    /**
+     * Consumes the opening quote of a string.
+     *
+     * @return The index of the first character of the string, or -1 if no string
+     *         comes next.
+     */
+    private int stringStart() {
+        return expect('"') ? pos : -1;
+    }
+
+    /**
+     * Consumes the rest of a plain string: printable ASCII without escapes.
+     *
+     * @param start The index returned by {@link #stringStart()}.
+     * @return The index of the closing quote, or -1 if the string is not plain.
+     */
+    private int stringEnd(int start) {
+        if (start < 0) {
+            pos = -1;
+            return -1;
+        }
+        while (pos < json.length) {
+            byte b = json[pos];
+            if (b == '"') {
+                return pos++;
+            }
+            if (b < 0x20 || b == 0x7F || b == '\\') {
+                break;
+            }
+            pos++;
+        }
+        pos = -1;
+        return -1;
+    }
+
+    /**
+     * Consumes a plain integer: an optional minus sign and up to nine digits,
+     * with no fraction or exponent.
+     *
+     * @return The value, or 0 with the parser given up if the number is not
+     *         plain.
+     */
+    private int integer() {
+        boolean negative = expect('-');
+        int start = pos;
+        int value = 0;
+        while (pos >= 0 && pos < json.length && json[pos] >= '0' && json[pos] <= '9') {
+            value = value * 10 + (json[pos] - '0');
+            pos++;
+        }
+        int digits = pos - start;
+        if (pos < 0 || digits == 0 || digits > MAX_DIGITS || (digits > 1 && json[start] == '0')
+                || (pos < json.length && (json[pos] == '.' || json[pos] == 'e' || json[pos] == 'E'))) {
+            pos = -1;
+            return 0;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Compares part of the body with a name.
+     *
+     * @param start The index of the first character of the part.
+     * @param end   The index after the last character of the part.
+     * @param name  The name as ASCII bytes.
+     * @return true if they are the same, false otherwise.
+     */
+    private boolean is(int start, int end, byte[] name) {
+        if (end - start != name.length) {
+            return false;
+        }
+        for (int i = 0; i < name.length; i++) {
+            if (json[start + i] != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds which of the given names part of the body is.
+     *
+     * @param start The index of the first character of the part.
+     * @param end   The index after the last character of the part, or -1 if the
+     *              part could not be read.
+     * @param names The names as ASCII bytes.
+     * @return The index of the matching name, or -1 if none matches.
+     */
+    private int lookup(int start, int end, byte[][] names) {
+        if (end < 0) {
+            return -1;
+        }
+        for (int i = 0; i < names.length; i++) {
+            if (is(start, end, names[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Encodes the names of the animals, in turn order, as ASCII bytes.
+     *
+     * @return The names of the animals.
+     */
+    private static byte[][] animalNames() {
+        int count = 0;
+        while (Game.animalName(count) != null) {
+            count++;
+        }
+        byte[][] names = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            names[i] = ascii(Game.animalName(i));
+        }
+        return names;
+    }
+
+    /**
+     * Encodes a name as ASCII bytes.
+     *
+     * @param name The name.
+     * @return Its bytes.
+     */
+    private static byte[] ascii(String name) {
+        return name.getBytes(StandardCharsets.US_ASCII);
+    }
+}
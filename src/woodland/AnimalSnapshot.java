@@ -0,0 +1,102 @@
+package woodland;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import woodland.Animals.Animal;
+import woodland.Spells.Spell;
+
+/**
+ * An animal as it was when a {@link GameSnapshot} was taken: its life points,
+ * its spells and the square it stood on. A snapshot of an animal never
+ * changes; the next snapshot of the game holds a new one if the animal has
+ * changed, and the same one otherwise.
+ */
+public final class AnimalSnapshot {
+    private final Animal animal;
+    private final int lifePoints;
+    private final Map<Spell, Integer> spells;
+    private final int row;
+    private final int col;
+
+    /**
+     * Takes a snapshot of an animal.
+     *
+     * @param animal The animal.
+     */
+    AnimalSnapshot(Animal animal) {
+        this.animal = animal;
+        this.lifePoints = animal.getLifePoints();
+        this.spells = animal.getSpells().isEmpty() ? Collections.emptyMap()
+                : Collections.unmodifiableMap(new LinkedHashMap<>(animal.getSpells()));
+        this.row = animal.getSquare().getRow();
+        this.col = animal.getSquare().getCol();
+    }
+
+    /**
+     * Returns the name of the animal.
+     *
+     * @return The name.
+     */
+    public String getName() {
+        return animal.getName();
+    }
+
+    /**
+     * Returns the description of the animal.
+     *
+     * @return The description.
+     */
+    public String getDescription() {
+        return animal.getDescription();
+    }
+
+    /**
+     * Returns the life points the animal had.
+     *
+     * @return The life points.
+     */
+    public int getLifePoints() {
+        return lifePoints;
+    }
+
+    /**
+     * Returns the spells the animal held, in the order the game lists them.
+     *
+     * @return The spells and how many of each, which cannot be changed.
+     */
+    public Map<Spell, Integer> getSpells() {
+        return spells;
+    }
+
+    /**
+     * Returns the row of the square the animal stood on.
+     *
+     * @return The row.
+     */
+    public int getRow() {
+        return row;
+    }
+
+    /**
+     * Returns the column of the square the animal stood on.
+     *
+     * @return The column.
+     */
+    public int getCol() {
+        return col;
+    }
+
+    /**
+     * Writes the animal as a JSON object, the same as the animal wrote itself
+     * when the snapshot was taken.
+     *
+     * @param out  The output to write to, positioned where a value of an array
+     *             may be written.
+     * @param lean Whether to leave the descriptions out.
+     */
+    public void writeJson(JsonOutput out, boolean lean) {
+        animal.writeJson(out, lean, lifePoints, spells);
+    }
+}
@@ -7,9 +7,11 @@ import javax.json.JsonArrayBuilder;
 import javax.json.JsonObject;
 import javax.json.JsonObjectBuilder;
 
+import woodland.JsonOutput;
 import woodland.Square;
 import woodland.Spells.Spell;
 import woodland.Game;
+import woodland.Moveables.MoveTable;
 
 /**
  * Represents an animal in the woodland environment.
@@ -21,6 +23,7 @@ public class Animal {
     protected Map<Spell, Integer> spells = new HashMap<>();
     protected int lifePoints;
     protected String description;
+    private byte[] descriptionJson;
     protected boolean hasSpell;
     private Map<Integer, Animal> animalIdentifier = new HashMap<>();
     private Square square;
@@ -28,7 +31,6 @@ public class Animal {
     protected boolean shielded = false;
     private int zero = 0;
     private int one = 1;
-    private int nineteen = 19;
     private int hundred = 100;
     private int ten = 10;
 
@@ -80,6 +82,18 @@ public class Animal {
         return false;
     }
 
+    /**
+     * Returns the table of squares the animal can move to from any square, used
+     * to find all of its legal moves at once. It must agree with
+     * {@link #move(int, int, int, int)}. This animal cannot move, so the table is
+     * empty and should be overridden in subclasses.
+     *
+     * @return The move table of the animal.
+     */
+    public MoveTable getMoveTable() {
+        return MoveTable.NONE;
+    }
+
     /**
      * Validates whether a move from the current position to a new position is
      * allowed within
@@ -93,10 +107,12 @@ public class Animal {
      */
 
     public boolean validMove(int oldRow, int oldCol, int newRow, int newCol) {
-        if (newRow <= nineteen && newCol <= nineteen) {
-            if (game.getSquare(newRow, newCol).hasAnimal()) {
+        int lastRow = game.getRows() - one;
+        int lastCol = game.getCols() - one;
+        if (newRow <= lastRow && newCol <= lastCol) {
+            if (game.hasAnimal(newRow, newCol)) {
                 return false;
-            } else if ((newRow < zero && newRow > nineteen) || (newCol > nineteen && newCol < zero)) {
+            } else if ((newRow < zero && newRow > lastRow) || (newCol > lastCol && newCol < zero)) {
                 game.setStatus("The last move was invalid.");
                 return false;
             } else {
@@ -223,6 +239,7 @@ public class Animal {
      */
     public void setDescription(String description) {
         this.description = description;
+        this.descriptionJson = JsonOutput.member("description", description);
     }
 
     /**
@@ -243,6 +260,15 @@ public class Animal {
         this.lifePoints = lifePoints;
     }
 
+    /**
+     * Returns the life points the animal has left.
+     * 
+     * @return The number of life points.
+     */
+    public int getLifePoints() {
+        return lifePoints;
+    }
+
     /**
      * Checks for the presence of other animals on the path to a new position.
      * The method checks linearly from the old position to the new one on the grid.
@@ -255,19 +281,10 @@ public class Animal {
      */
     protected boolean animalInPath(int oldRow, int oldCol, int newRow, int newCol) {
         if (oldCol != newCol) {
-            for (int col = oldCol + one; col <= newCol; col++) {
-                if (this.game.getSquare(newRow, col).hasAnimal()) {
-                    return true;
-                }
-            }
+            return this.game.animalInRow(newRow, oldCol + one, newCol);
         } else {
-            for (int row = oldRow + one; row <= newRow; row++) {
-                if (this.game.getSquare(row, newCol).hasAnimal()) {
-                    return true;
-                }
-            }
+            return this.game.animalInColumn(newCol, oldRow + one, newRow);
         }
-        return false;
     }
 
     /**
@@ -286,19 +303,10 @@ public class Animal {
      */
     public boolean creatureInPath(int oldRow, int oldCol, int newRow, int newCol) {
         if (oldCol != newCol) {
-            for (int col = oldCol + one; col <= newCol; col++) {
-                if (this.game.getSquare(newRow, col).hasCreature()) {
-                    return true;
-                }
-            }
+            return this.game.creatureInRow(newRow, oldCol + one, newCol);
         } else {
-            for (int row = oldRow + one; row <= newRow; row++) {
-                if (this.game.getSquare(row, newCol).hasCreature()) {
-                    return true;
-                }
-            }
+            return this.game.creatureInColumn(newCol, oldRow + one, newRow);
         }
-        return false;
     }
 
     /**
@@ -340,4 +348,51 @@ public class Animal {
 
         return animalJsonBuilder.build();
     }
+
+    /**
+     * Writes the animal's attributes as a JSON object straight to the output,
+     * without building a JsonObject first. The descriptions of the animal and its
+     * spells are spliced in already serialized. The output is the same as that
+     * of {@link #toJson()}, or leaves the descriptions out in lean mode.
+     *
+     * @param out  The output to write to, positioned where a value of an array
+     *             may be written.
+     * @param lean Whether to leave the descriptions out.
+     */
+    public void writeJson(JsonOutput out, boolean lean) {
+        writeJson(out, lean, this.lifePoints, spells);
+    }
+
+    /**
+     * Writes the animal as a JSON object the way {@link #writeJson(JsonOutput,
+     * boolean)} does, but with the given life points and spells in place of
+     * the animal's own. This is how a snapshot writes the animal as it was when
+     * the snapshot was taken.
+     *
+     * @param out        The output to write to, positioned where a value of an
+     *                   array may be written.
+     * @param lean       Whether to leave the descriptions out.
+     * @param lifePoints The life points written.
+     * @param spells     The spells written and how many of each.
+     */
+    public void writeJson(JsonOutput out, boolean lean, int lifePoints, Map<Spell, Integer> spells) {
+        out.startObject()
+                .write("name", this.name)
+                .write("type", "Animal");
+        if (!lean) {
+            out.fragment(descriptionJson);
+        }
+        out.write("life", lifePoints)
+                .startArray("spells");
+        for (Map.Entry<Spell, Integer> entry : spells.entrySet()) {
+            out.startObject()
+                    .write("name", entry.getKey().getName());
+            if (!lean) {
+                out.fragment(entry.getKey().getDescriptionJson());
+            }
+            out.write("amount", entry.getValue())
+                    .endObject();
+        }
+        out.endArray().endObject();
+    }
 }
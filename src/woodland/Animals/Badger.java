@@ -1,6 +1,7 @@
 package woodland.Animals;
 
 import woodland.Moveables.Digable;
+import woodland.Moveables.MoveTable;
 
 /**
  * Represents a Badger, a specific type of animal in the woodland environment.
@@ -11,6 +12,7 @@ import woodland.Moveables.Digable;
  * basic attributes and methods.
  */
 public class Badger extends Animal implements Digable {
+    private static final MoveTable MOVES = DIGS;
     private int hundred = 100;
     private int one = 1;
     private int two = 2;
@@ -100,4 +102,14 @@ public class Badger extends Animal implements Digable {
         }
         return false;
     }
+
+    /**
+     * Returns the squares the badger can dig to.
+     *
+     * @return The move table of the badger.
+     */
+    @Override
+    public MoveTable getMoveTable() {
+        return MOVES;
+    }
 }
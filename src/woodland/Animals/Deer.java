@@ -1,6 +1,7 @@
 package woodland.Animals;
 
 import woodland.Moveables.LongJumpable;
+import woodland.Moveables.MoveTable;
 
 /**
  * Represents a Deer animal in the woodland environment.
@@ -8,6 +9,7 @@ import woodland.Moveables.LongJumpable;
  * LongJumpable interface.
  */
 public class Deer extends Animal implements LongJumpable {
+    private static final MoveTable MOVES = LONG_JUMPS.plus(MoveTable.diagonal(1));
     private int hundred = 100;
     private int one = 1;
     private int three = 3;
@@ -73,4 +75,15 @@ public class Deer extends Animal implements LongJumpable {
         }
         return false;
     }
+
+    /**
+     * Returns the squares the deer can jump to: a long jump or one square
+     * diagonally.
+     *
+     * @return The move table of the deer.
+     */
+    @Override
+    public MoveTable getMoveTable() {
+        return MOVES;
+    }
 }
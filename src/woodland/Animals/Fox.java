@@ -1,6 +1,7 @@
 package woodland.Animals;
 
 import woodland.Moveables.LongJumpable;
+import woodland.Moveables.MoveTable;
 
 /**
  * Represents a Fox animal in the woodland environment.
@@ -8,6 +9,7 @@ import woodland.Moveables.LongJumpable;
  * LongJumpable interface.
  */
 public class Fox extends Animal implements LongJumpable {
+    private static final MoveTable MOVES = LONG_JUMPS.checkingPath();
     private int hundred = 100;
     private int three = 3;
     private int zero = 0;
@@ -56,4 +58,16 @@ public class Fox extends Animal implements LongJumpable {
             }
         } return false;
     }
+
+    /**
+     * Returns the squares the fox can jump to. As in
+     * {@link #move(int, int, int, int)}, a jump right or down cannot pass another
+     * animal.
+     *
+     * @return The move table of the fox.
+     */
+    @Override
+    public MoveTable getMoveTable() {
+        return MOVES;
+    }
 }
@@ -1,6 +1,7 @@
 package woodland.Animals;
 
 import woodland.Moveables.Flyable;
+import woodland.Moveables.MoveTable;
 
 /**
  * Represents an Owl in the woodland environment.
@@ -8,6 +9,7 @@ import woodland.Moveables.Flyable;
  * interface.
  */
 public class Owl extends Animal implements Flyable {
+    private static final MoveTable MOVES = FLIGHTS;
     private int hundred = 100;
     private int one = 1;
 
@@ -76,4 +78,14 @@ public class Owl extends Animal implements Flyable {
             return false;
         }
     }
+
+    /**
+     * Returns the squares the owl can fly to.
+     *
+     * @return The move table of the owl.
+     */
+    @Override
+    public MoveTable getMoveTable() {
+        return MOVES;
+    }
 }
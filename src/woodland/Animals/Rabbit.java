@@ -1,6 +1,7 @@
 package woodland.Animals;
 
 import woodland.Moveables.ShortJumpable;
+import woodland.Moveables.MoveTable;
 
 /**
  * Represents a Rabbit in the woodland environment.
@@ -8,6 +9,7 @@ import woodland.Moveables.ShortJumpable;
  * ShortJumpable interface.
  */
 public class Rabbit extends Animal implements ShortJumpable {
+    private static final MoveTable MOVES = SHORT_JUMPS.checkingPath();
     private int hundred = 100;
     private int two = 2;
     private int zero = 0;
@@ -74,4 +76,16 @@ public class Rabbit extends Animal implements ShortJumpable {
         }
         return false;
     }
+
+    /**
+     * Returns the squares the rabbit can jump to. As in
+     * {@link #move(int, int, int, int)}, a jump right or down cannot pass another
+     * animal.
+     *
+     * @return The move table of the rabbit.
+     */
+    @Override
+    public MoveTable getMoveTable() {
+        return MOVES;
+    }
 }
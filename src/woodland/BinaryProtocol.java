@@ -0,0 +1,171 @@
+package woodland;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.BufferUnderflowException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import woodland.Animals.Animal;
+import woodland.Creatures.Creature;
+import woodland.Spells.Spell;
+
+/**
+ * A compact binary encoding of the game state and of actions, for clients that
+ * poll often and do not need JSON. Clients ask for a binary state with
+ * {@code Accept: application/octet-stream} and send a binary action with
+ * {@code Content-Type: application/octet-stream}. Animals, creatures and spells
+ * are identified by small ordinals instead of names, and every field has a
+ * fixed width. All numbers are big-endian.
+ *
+ * A state is laid out as follows:
+ * <pre>
+ * u8   format, currently 1
+ * u64  state version
+ * u16  rows, u16 columns
+ * u8   flags: bit 0 is set when the game is over
+ * u8   current animal, u8 next animal
+ * u8   turn type: 0 move, 1 spell
+ * u16  status length, then the status as UTF-8
+ * u8   one byte per square, row by row: bit 7 is set when the square is
+ *      visible; bits 4-6 hold the animal's ordinal plus one and bits 0-3 the
+ *      creature's kind plus one, or 0 when there is none or the square is not
+ *      visible
+ * then for every animal shown on the board, in board order:
+ *      i16 life, u8 count of each spell in spell ordinal order
+ * then for every creature shown on the board, in board order:
+ *      u8 attack, u8 confused (0 or 1), u8 charm turns left for each animal in
+ *      animal ordinal order
+ * </pre>
+ *
+ * An action is a u8 type (0 move, 1 spell) and a u8 animal ordinal, followed
+ * for a move by u16 row and u16 column, and for a spell by a u8 spell ordinal.
+ */
+public class BinaryProtocol {
+    /**
+     * The media type of binary states and actions.
+     */
+    public static final String MEDIA_TYPE = "application/octet-stream";
+
+    private static final int FORMAT = 1;
+    private static final int MOVE = 0;
+    private static final int SPELL = 1;
+    private static final Spell[] SPELLS = Spell.values();
+
+    /**
+     * Checks whether a request asks for the binary encoding of the state.
+     *
+     * @param request The request.
+     * @return true if the client accepts binary states, false otherwise.
+     */
+    public static boolean accepts(HttpRequest request) {
+        String accept = request.getHeader("accept");
+        return accept != null && accept.contains(MEDIA_TYPE);
+    }
+
+    /**
+     * Checks whether a request's body is a binary action.
+     *
+     * @param request The request.
+     * @return true if the body is binary, false if it is JSON.
+     */
+    public static boolean isBinary(HttpRequest request) {
+        String contentType = request.getHeader("content-type");
+        return contentType != null && contentType.startsWith(MEDIA_TYPE);
+    }
+
+    /**
+     * Decodes a binary action.
+     *
+     * @param body The bytes of the action.
+     * @return The decoded command.
+     * @throws IllegalArgumentException If the action is truncated or names an
+     *                                  unknown action, animal or spell.
+     */
+    public static GameCommand decodeCommand(byte[] body) {
+        ByteBuffer action = ByteBuffer.wrap(body);
+        try {
+            int type = action.get() & 0xFF;
+            int animal = action.get() & 0xFF;
+            String animalName = Game.animalName(animal);
+            if (animalName == null) {
+                throw new IllegalArgumentException("Unknown animal: " + animal);
+            }
+            if (type == MOVE) {
+                int row = action.getShort() & 0xFFFF;
+                int col = action.getShort() & 0xFFFF;
+                return new GameCommand(GameCommand.Type.MOVE, animalName, animal, row, col, null, null);
+            } else if (type == SPELL) {
+                int spell = action.get() & 0xFF;
+                if (spell >= SPELLS.length) {
+                    throw new IllegalArgumentException("Unknown spell: " + spell);
+                }
+                return new GameCommand(GameCommand.Type.SPELL, animalName, animal, -1, -1, SPELLS[spell].getName(),
+                        SPELLS[spell]);
+            }
+            throw new IllegalArgumentException("Unknown action: " + type);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated action", e);
+        }
+    }
+
+    /**
+     * Writes the binary encoding of the current state of a game.
+     *
+     * @param game The game whose state is written.
+     * @param out  The stream to write to.
+     * @throws IOException If writing to the stream fails.
+     */
+    public static void writeState(Game game, OutputStream out) throws IOException {
+        int rows = game.getRows();
+        int cols = game.getCols();
+        byte[] status = game.status.getBytes(StandardCharsets.UTF_8);
+        int animals = game.getAnimals().size();
+        int details = (animals + game.getCreatures().size()) * (2 + SPELLS.length + animals);
+        ByteBuffer state = ByteBuffer.allocate(19 + status.length + rows * cols + details);
+
+        state.put((byte) FORMAT);
+        state.putLong(game.getVersion());
+        state.putShort((short) rows);
+        state.putShort((short) cols);
+        state.put((byte) (game.gameOver() ? 1 : 0));
+        state.put((byte) Game.animalOrdinal(game.getCurrentAnimalName()));
+        state.put((byte) Game.animalOrdinal(game.getNextAnimalName()));
+        state.put((byte) (game.getTurnType().equals("spell") ? 1 : 0));
+        state.putShort((short) status.length);
+        state.put(status);
+
+        int cells = state.position();
+        int size = rows * cols;
+        state.position(cells + size);
+        Bitboard visible = game.getVisibleBits();
+        for (int index = visible.next(0, size); index >= 0; index = visible.next(index + 1, size)) {
+            if (game.getAnimalBits().get(index)) {
+                Animal animal = game.getSquare(index / cols, index % cols).getAnimal();
+                state.put(cells + index, (byte) (0x80 | (Game.animalOrdinal(animal.getName()) + 1) << 4));
+                state.putShort((short) animal.getLifePoints());
+                Map<Spell, Integer> spells = animal.getSpells();
+                for (Spell spell : SPELLS) {
+                    state.put((byte) (int) spells.getOrDefault(spell, 0));
+                }
+            } else {
+                state.put(cells + index, (byte) 0x80);
+            }
+        }
+
+        for (int index = visible.next(0, size); index >= 0; index = visible.next(index + 1, size)) {
+            if (game.getCreatureBits().get(index)) {
+                Creature creature = game.getSquare(index / cols, index % cols).getCreature();
+                int cell = cells + index;
+                state.put(cell, (byte) (state.get(cell) | game.creatureOrdinal(creature) + 1));
+                state.put((byte) creature.getAttackValue());
+                state.put((byte) (creature.isConfused() ? 1 : 0));
+                for (Animal animal : game.getAnimals()) {
+                    state.put((byte) creature.getCharmTurns(animal));
+                }
+            }
+        }
+        out.write(state.array(), 0, state.position());
+    }
+}
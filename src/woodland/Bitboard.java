@@ -0,0 +1,192 @@
+package woodland;
+
+import java.util.Arrays;
+
+/**
+ * One bit for each square of a board, packed 64 to a long. A game keeps one
+ * bitboard for each kind of thing a square can hold, so questions such as
+ * whether any square along a path holds a creature are answered by masking a
+ * few words instead of visiting every square on the way.
+ *
+ * Squares are numbered by the caller; a game numbers them row by row, and keeps
+ * some layers numbered column by column as well, so that both horizontal and
+ * vertical paths are ranges of consecutive bits.
+ */
+public class Bitboard {
+    private static final long ALL = -1L;
+    private static final int BLOCK_SHIFT = 3;
+    private static final int BLOCK_WORDS = 1 << BLOCK_SHIFT;
+
+    private final long[][] blocks;
+
+    /**
+     * Creates a bitboard with every bit clear. The words are allocated in blocks
+     * of 512 squares the first time a bit in the block is set, so a large
+     * board with few bits set takes little memory.
+     *
+     * @param size The number of squares.
+     */
+    public Bitboard(int size) {
+        int words = (size + 63) >>> 6;
+        blocks = new long[(words + BLOCK_WORDS - 1) >>> BLOCK_SHIFT][];
+    }
+
+    /**
+     * Returns whether the bit of a square is set.
+     *
+     * @param index The number of the square.
+     * @return true if the bit is set, false otherwise.
+     */
+    public boolean get(int index) {
+        return (word(index >>> 6) & (1L << index)) != 0;
+    }
+
+    /**
+     * Sets or clears the bit of a square.
+     *
+     * @param index The number of the square.
+     * @param value Whether the bit is set.
+     */
+    public void set(int index, boolean value) {
+        int word = index >>> 6;
+        long[] block = blocks[word >>> BLOCK_SHIFT];
+        if (block == null) {
+            if (!value) {
+                return;
+            }
+            block = new long[BLOCK_WORDS];
+            blocks[word >>> BLOCK_SHIFT] = block;
+        }
+        if (value) {
+            block[word & (BLOCK_WORDS - 1)] |= 1L << index;
+        } else {
+            block[word & (BLOCK_WORDS - 1)] &= ~(1L << index);
+        }
+    }
+
+    /**
+     * Clears every bit. Blocks already allocated are kept, so a bitboard that is
+     * filled and cleared over and over allocates nothing after the first time.
+     */
+    public void clear() {
+        for (long[] block : blocks) {
+            if (block != null) {
+                Arrays.fill(block, 0);
+            }
+        }
+    }
+
+    /**
+     * Returns whether any bit in a range is set.
+     *
+     * @param from The first square of the range.
+     * @param to   The square after the last one of the range.
+     * @return true if at least one bit in the range is set, false otherwise.
+     */
+    public boolean any(int from, int to) {
+        return next(from, to) >= 0;
+    }
+
+    /**
+     * Finds the first set bit in a range. Blocks with no bit set are skipped
+     * whole.
+     *
+     * @param from The first square of the range.
+     * @param to   The square after the last one of the range.
+     * @return The number of the first square whose bit is set, or -1 if there is
+     *         none.
+     */
+    public int next(int from, int to) {
+        if (from >= to) {
+            return -1;
+        }
+        int word = from >>> 6;
+        int last = (to - 1) >>> 6;
+        long bits = word(word) & (ALL << from);
+        while (true) {
+            if (word == last) {
+                bits &= ALL >>> (63 - ((to - 1) & 63));
+            }
+            if (bits != 0) {
+                return (word << 6) + Long.numberOfTrailingZeros(bits);
+            }
+            if (word == last) {
+                return -1;
+            }
+            word++;
+            while (blocks[word >>> BLOCK_SHIFT] == null) {
+                word = ((word >>> BLOCK_SHIFT) + 1) << BLOCK_SHIFT;
+                if (word > last) {
+                    return -1;
+                }
+            }
+            bits = word(word);
+        }
+    }
+
+    /**
+     * Finds the last set bit in a range. Blocks with no bit set are skipped
+     * whole.
+     *
+     * @param from The first square of the range.
+     * @param to   The square after the last one of the range.
+     * @return The number of the last square whose bit is set, or -1 if there is
+     *         none.
+     */
+    public int previous(int from, int to) {
+        if (from >= to) {
+            return -1;
+        }
+        int word = (to - 1) >>> 6;
+        long bits = word(word) & (ALL >>> (63 - ((to - 1) & 63)));
+        int first = from >>> 6;
+        while (true) {
+            if (word == first) {
+                bits &= ALL << from;
+            }
+            if (bits != 0) {
+                return (word << 6) + 63 - Long.numberOfLeadingZeros(bits);
+            }
+            if (word == first) {
+                return -1;
+            }
+            word--;
+            while (blocks[word >>> BLOCK_SHIFT] == null) {
+                word = ((word >>> BLOCK_SHIFT) << BLOCK_SHIFT) - 1;
+                if (word < first) {
+                    return -1;
+                }
+            }
+            bits = word(word);
+        }
+    }
+
+    /**
+     * Returns the number of set bits.
+     *
+     * @return The number of squares whose bit is set.
+     */
+    public int count() {
+        int count = 0;
+        for (long[] block : blocks) {
+            if (block != null) {
+                for (long word : block) {
+                    count += Long.bitCount(word);
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the word holding the bits of squares 64 * i to 64 * i + 63, the
+     * first square in the lowest bit.
+     *
+     * @param i The index of the word.
+     * @return The word, 0 if its block has never had a bit set.
+     */
+    public long word(int i) {
+        long[] block = blocks[i >>> BLOCK_SHIFT];
+        return block == null ? 0 : block[i & (BLOCK_WORDS - 1)];
+    }
+}
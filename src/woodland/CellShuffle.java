@@ -0,0 +1,116 @@
+package woodland;
+
+import java.util.SplittableRandom;
+
+/**
+ * Deals distinct squares, numbered from 0, in random order, each with a single
+ * draw. It is a Fisher-Yates shuffle stopped after as many squares as are
+ * wanted: the i-th square dealt is swapped in from a random place at or after
+ * i. When only a few of the squares are wanted the shuffled array is never
+ * built; only the places that have been swapped are stored, in a small open
+ * addressing table, so dealing k squares out of n costs time and memory in
+ * proportion to k however large n is. When so many are wanted that the table
+ * would take more room than the array, the array is used instead.
+ */
+public final class CellShuffle {
+    private final int size;
+    private final int draws;
+    private final int[] keys;
+    private final int[] values;
+    private final int mask;
+    private final int[] dense;
+    private int dealt;
+
+    /**
+     * Creates a shuffle of the squares from 0 to size - 1.
+     *
+     * @param size  The number of squares to deal from.
+     * @param draws The most squares that will be dealt.
+     */
+    public CellShuffle(int size, int draws) {
+        this.size = size;
+        this.draws = Math.min(draws, size);
+        int capacity = Integer.highestOneBit(Math.max(this.draws, 1)) * 4;
+        if ((long) capacity * 2 >= size) {
+            dense = new int[size];
+            keys = null;
+            values = null;
+            mask = 0;
+        } else {
+            dense = null;
+            keys = new int[capacity];
+            values = new int[capacity];
+            mask = capacity - 1;
+        }
+    }
+
+    /**
+     * Deals the next square.
+     *
+     * @param random The generator the draw is taken from.
+     * @return A square not dealt before.
+     * @throws IllegalStateException If as many squares as were asked for have
+     *                               been dealt already.
+     */
+    public int next(SplittableRandom random) {
+        if (dealt == draws) {
+            throw new IllegalStateException("No squares left to deal");
+        }
+        int swap = dealt + random.nextInt(size - dealt);
+        int square = get(swap);
+        if (swap != dealt) {
+            put(swap, get(dealt));
+        }
+        dealt++;
+        return square;
+    }
+
+    /**
+     * Returns what is at a place of the shuffled array.
+     *
+     * @param place The place.
+     * @return The square there, which is the place itself if it has not been
+     *         swapped.
+     */
+    private int get(int place) {
+        if (dense != null) {
+            return dense[place] == 0 ? place : dense[place] - 1;
+        }
+        for (int slot = hash(place); keys[slot] != 0; slot = (slot + 1) & mask) {
+            if (keys[slot] == place + 1) {
+                return values[slot];
+            }
+        }
+        return place;
+    }
+
+    /**
+     * Sets what is at a place of the shuffled array.
+     *
+     * @param place  The place.
+     * @param square The square there.
+     */
+    private void put(int place, int square) {
+        if (dense != null) {
+            dense[place] = square + 1;
+            return;
+        }
+        int slot = hash(place);
+        while (keys[slot] != 0 && keys[slot] != place + 1) {
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = place + 1;
+        values[slot] = square;
+    }
+
+    /**
+     * Spreads a place over the table.
+     *
+     * @param place The place.
+     * @return The slot to start looking for the place at.
+     */
+    private int hash(int place) {
+        int hash = place * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
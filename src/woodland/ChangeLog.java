@@ -0,0 +1,162 @@
+package woodland;
+
+import java.util.BitSet;
+
+/**
+ * Records which parts of a game's state changed at which state version, so a
+ * client that already has the state at some version can be sent only what
+ * changed since. A change is either a square, identified by its index
+ * {@code row * columns + col}, or one of the top level fields of the state,
+ * identified by a negative field code. Changes to an animal or a creature are
+ * recorded as changes to the square it stands on, since that is where they
+ * appear in the state.
+ *
+ * Only the most recent changes are kept, in a fixed size ring. A client that is
+ * further behind than the oldest change kept gets the full state instead.
+ */
+public class ChangeLog {
+    /**
+     * The status message changed.
+     */
+    public static final int STATUS = -1;
+    /**
+     * The turn type changed.
+     */
+    public static final int TURN_TYPE = -2;
+    /**
+     * The current and next animal changed.
+     */
+    public static final int TURN = -3;
+    /**
+     * The game ended.
+     */
+    public static final int GAME_OVER = -4;
+
+    private long[] versions;
+    private int[] changes;
+    private int next;
+    private int size;
+    private long coveredFrom;
+
+    /**
+     * Creates an empty change log.
+     *
+     * @param capacity     The number of changes kept.
+     * @param startVersion The state version the log starts at; every change after
+     *                     it is recorded until the ring overflows.
+     */
+    public ChangeLog(int capacity, long startVersion) {
+        versions = new long[capacity];
+        changes = new int[capacity];
+        coveredFrom = startVersion;
+    }
+
+    /**
+     * Records a change made at the given version, evicting the oldest change if
+     * the log is full.
+     *
+     * @param version The state version the change produced.
+     * @param change  A square index, or one of the field codes.
+     */
+    public void record(long version, int change) {
+        if (size == versions.length) {
+            coveredFrom = versions[next];
+        } else {
+            size++;
+        }
+        versions[next] = version;
+        changes[next] = change;
+        next = (next + 1) % versions.length;
+    }
+
+    /**
+     * Moves the start of the log forward without recording a change, so that
+     * nothing before the given version can be answered with a delta.
+     *
+     * @param version The version the log now starts at.
+     */
+    public void restartAt(long version) {
+        size = 0;
+        next = 0;
+        coveredFrom = version;
+    }
+
+    /**
+     * Checks whether every change made after the given version is still kept.
+     *
+     * @param since The version the client has.
+     * @return true if a delta from that version can be built, false if the client
+     *         needs the full state.
+     */
+    public boolean covers(long since) {
+        return since >= coveredFrom;
+    }
+
+    /**
+     * Collects every change made after the given version.
+     *
+     * @param since   The version the client has.
+     * @param squares Set to the indices of the squares that changed.
+     * @return A bit mask of the fields that changed, where the field with code
+     *         {@code c} is bit {@code -c - 1}.
+     */
+    public int collect(long since, BitSet squares) {
+        int fields = 0;
+        for (int i = 0; i < size; i++) {
+            int slot = Math.floorMod(next - 1 - i, versions.length);
+            if (versions[slot] <= since) {
+                break;
+            }
+            if (changes[slot] >= 0) {
+                squares.set(changes[slot]);
+            } else {
+                fields |= 1 << (-changes[slot] - 1);
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * Collects the squares changed after the given version, looking only at the
+     * changes themselves rather than at the whole board as
+     * {@link #collect(long, BitSet)} does. A square that changed more than once
+     * is listed more than once.
+     *
+     * @param since The version the client has.
+     * @return The indices of the squares that changed, newest change first.
+     */
+    public int[] collectSquares(long since) {
+        int count = 0;
+        int newer = 0;
+        for (; newer < size; newer++) {
+            int slot = Math.floorMod(next - 1 - newer, versions.length);
+            if (versions[slot] <= since) {
+                break;
+            }
+            if (changes[slot] >= 0) {
+                count++;
+            }
+        }
+        int[] squares = new int[count];
+        count = 0;
+        for (int i = 0; i < newer; i++) {
+            int slot = Math.floorMod(next - 1 - i, versions.length);
+            if (changes[slot] >= 0) {
+                squares[count++] = changes[slot];
+            }
+        }
+        return squares;
+    }
+
+    /**
+     * Checks whether a field is part of a mask returned by
+     * {@link #collect(long, BitSet)}.
+     *
+     * @param fields The mask of changed fields.
+     * @param field  The field code.
+     * @return true if the field changed, false otherwise.
+     */
+    public static boolean contains(int fields, int field) {
+        return (fields & (1 << (-field - 1))) != 0;
+    }
+}
@@ -0,0 +1,170 @@
+package woodland;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses response bodies with one of the content codings clients can ask
+ * for in Accept-Encoding: gzip or deflate. A Deflater holds native memory and
+ * is costly to create, so deflaters are kept in pools and reused, one per
+ * worker compressing at a time, the same way response writers are.
+ */
+public class Compression {
+    /**
+     * The body is sent as it is.
+     */
+    public static final int IDENTITY = 0;
+    /**
+     * The body is compressed in the gzip format, RFC 1952.
+     */
+    public static final int GZIP = 1;
+    /**
+     * The body is compressed in the zlib format, RFC 1950, which is what HTTP
+     * calls deflate.
+     */
+    public static final int DEFLATE = 2;
+
+    private static final String[] NAMES = {null, "gzip", "deflate"};
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+    private static final int GZIP_TRAILER = 8;
+
+    private final Queue<Deflater> gzipDeflaters = new ConcurrentLinkedQueue<>();
+    private final Queue<Deflater> zlibDeflaters = new ConcurrentLinkedQueue<>();
+    private int level;
+
+    /**
+     * Creates a compressor.
+     *
+     * @param level The compression level, from 1 (fastest) to 9 (smallest), or
+     *              -1 for the default.
+     */
+    public Compression(int level) {
+        this.level = level;
+    }
+
+    /**
+     * Picks the coding to send a response in from the Accept-Encoding header of
+     * the request. gzip is preferred over deflate when both are accepted, and a
+     * coding given a q value of 0 is never used.
+     *
+     * @param request The request.
+     * @return {@link #GZIP}, {@link #DEFLATE} or {@link #IDENTITY}.
+     */
+    public static int negotiate(HttpRequest request) {
+        String accept = request.getHeader("accept-encoding");
+        if (accept == null) {
+            return IDENTITY;
+        }
+        boolean gzip = false;
+        boolean deflate = false;
+        boolean gzipRefused = false;
+        boolean deflateRefused = false;
+        boolean any = false;
+        for (String part : accept.split(",")) {
+            String[] params = part.split(";");
+            String coding = params[0].trim().toLowerCase();
+            boolean accepted = true;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        accepted = Double.parseDouble(param.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        accepted = false;
+                    }
+                }
+            }
+            if (coding.equals("gzip") || coding.equals("x-gzip")) {
+                gzip = accepted;
+                gzipRefused = !accepted;
+            } else if (coding.equals("deflate")) {
+                deflate = accepted;
+                deflateRefused = !accepted;
+            } else if (coding.equals("*")) {
+                any = accepted;
+            }
+        }
+        if (gzip || (any && !gzipRefused)) {
+            return GZIP;
+        } else if (deflate || (any && !deflateRefused)) {
+            return DEFLATE;
+        }
+        return IDENTITY;
+    }
+
+    /**
+     * Returns the name of a coding as sent in the Content-Encoding header.
+     *
+     * @param encoding {@link #GZIP} or {@link #DEFLATE}.
+     * @return The name of the coding.
+     */
+    public static String name(int encoding) {
+        return NAMES[encoding];
+    }
+
+    /**
+     * Compresses the remaining bytes of a buffer. The buffer's position is left
+     * where it was.
+     *
+     * @param input    The bytes to compress.
+     * @param encoding {@link #GZIP} or {@link #DEFLATE}.
+     * @return The compressed bytes.
+     */
+    public byte[] compress(ByteBuffer input, int encoding) {
+        boolean gzip = encoding == GZIP;
+        Queue<Deflater> pool = gzip ? gzipDeflaters : zlibDeflaters;
+        Deflater deflater = pool.poll();
+        if (deflater == null) {
+            deflater = new Deflater(level, gzip);
+        }
+        try {
+            int length = input.remaining();
+            byte[] output = new byte[length / 2 + GZIP_HEADER.length + GZIP_TRAILER + 64];
+            int count = 0;
+            if (gzip) {
+                System.arraycopy(GZIP_HEADER, 0, output, 0, GZIP_HEADER.length);
+                count = GZIP_HEADER.length;
+            }
+            deflater.setInput(input.duplicate());
+            deflater.finish();
+            while (!deflater.finished()) {
+                if (count == output.length) {
+                    output = Arrays.copyOf(output, output.length * 2);
+                }
+                count += deflater.deflate(output, count, output.length - count);
+            }
+            if (gzip) {
+                CRC32 crc = new CRC32();
+                crc.update(input.duplicate());
+                if (output.length - count < GZIP_TRAILER) {
+                    output = Arrays.copyOf(output, count + GZIP_TRAILER);
+                }
+                count = putIntLittleEndian(output, count, (int) crc.getValue());
+                count = putIntLittleEndian(output, count, length);
+            }
+            return count == output.length ? output : Arrays.copyOf(output, count);
+        } finally {
+            deflater.reset();
+            pool.add(deflater);
+        }
+    }
+
+    /**
+     * Writes a 32 bit number least significant byte first, as gzip does.
+     *
+     * @param output The array to write to.
+     * @param offset The index to write at.
+     * @param value  The number.
+     * @return The index after the number.
+     */
+    private static int putIntLittleEndian(byte[] output, int offset, int value) {
+        for (int i = 0; i < 4; i++) {
+            output[offset + i] = (byte) (value >>> (8 * i));
+        }
+        return offset + 4;
+    }
+}
@@ -0,0 +1,138 @@
+package woodland;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import woodland.Animals.Animal;
+import woodland.Creatures.Creature;
+
+/**
+ * A creature as it was when a {@link GameSnapshot} was taken: who had charmed,
+ * shielded and confused it. Animals are named rather than referred to, so a
+ * snapshot holds nothing that changes as the game goes on.
+ */
+public final class CreatureSnapshot {
+    private final Creature creature;
+    private final boolean confused;
+    private final String confusedBy;
+    private final Map<String, Integer> charm;
+    private final List<String> shields;
+
+    /**
+     * Takes a snapshot of a creature.
+     *
+     * @param creature The creature.
+     */
+    CreatureSnapshot(Creature creature) {
+        this.creature = creature;
+        this.confused = creature.isConfused();
+        this.confusedBy = creature.getConfusedAnimal() == null ? null : creature.getConfusedAnimal().getName();
+        if (creature.getCharmAnimals().isEmpty()) {
+            charm = Collections.emptyMap();
+        } else {
+            Map<String, Integer> names = new LinkedHashMap<>();
+            for (Map.Entry<Animal, Integer> entry : creature.getCharmAnimals().entrySet()) {
+                names.put(entry.getKey().getName(), entry.getValue());
+            }
+            charm = Collections.unmodifiableMap(names);
+        }
+        if (creature.getShieldAnimals().isEmpty()) {
+            shields = Collections.emptyList();
+        } else {
+            List<String> names = new ArrayList<>();
+            for (Animal animal : creature.getShieldAnimals()) {
+                names.add(animal.getName());
+            }
+            shields = Collections.unmodifiableList(names);
+        }
+    }
+
+    /**
+     * Returns the name of the creature.
+     *
+     * @return The name.
+     */
+    public String getName() {
+        return creature.getName();
+    }
+
+    /**
+     * Returns the short name of the creature.
+     *
+     * @return The short name.
+     */
+    public String getShortName() {
+        return creature.getShortName();
+    }
+
+    /**
+     * Returns the description of the creature.
+     *
+     * @return The description.
+     */
+    public String getDescription() {
+        return creature.getDescription();
+    }
+
+    /**
+     * Returns the attack value of the creature.
+     *
+     * @return The attack value.
+     */
+    public int getAttackValue() {
+        return creature.getAttackValue();
+    }
+
+    /**
+     * Returns whether the creature was confused.
+     *
+     * @return true if it was confused.
+     */
+    public boolean isConfused() {
+        return confused;
+    }
+
+    /**
+     * Returns the name of the animal that last confused the creature.
+     *
+     * @return The name, or null if no animal had.
+     */
+    public String getConfusedBy() {
+        return confusedBy;
+    }
+
+    /**
+     * Returns the animals charming the creature and the turns each charm had
+     * left.
+     *
+     * @return The turns by name of animal, which cannot be changed.
+     */
+    public Map<String, Integer> getCharm() {
+        return charm;
+    }
+
+    /**
+     * Returns the animals that had shielded the creature, once for each
+     * shield.
+     *
+     * @return The names of the animals, which cannot be changed.
+     */
+    public List<String> getShields() {
+        return shields;
+    }
+
+    /**
+     * Writes the creature as a JSON object, the same as the creature wrote
+     * itself when the snapshot was taken.
+     *
+     * @param out  The output to write to, positioned where a value of an array
+     *             may be written.
+     * @param lean Whether to leave the description out.
+     */
+    public void writeJson(JsonOutput out, boolean lean) {
+        creature.writeJson(out, lean, confused, charm);
+    }
+}
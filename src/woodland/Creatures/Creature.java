@@ -9,6 +9,7 @@ import javax.json.Json;
 import javax.json.JsonObject;
 import javax.json.JsonObjectBuilder;
 
+import woodland.JsonOutput;
 import woodland.Animals.Animal;
 
 /**
@@ -23,6 +24,7 @@ public class Creature {
     protected boolean confused;
     protected String shortName;
     protected String description;
+    private byte[] descriptionJson;
     protected List<Animal> shieldAnimal;
     protected Animal confusedByAnimal;
     private int zero = 0;
@@ -91,6 +93,49 @@ public class Creature {
         return confused;
     }
 
+    /**
+     * Returns the number of turns a given animal stays charmed by the creature.
+     * 
+     * @param animal Animal to check.
+     * @return The turns left, or 0 if the animal is not charmed.
+     */
+    public int getCharmTurns(Animal animal) {
+        return charmAnimal.getOrDefault(animal, zero);
+    }
+
+    /**
+     * Sets the number of turns a given animal stays charmed by the creature.
+     * 
+     * @param animal Animal to set.
+     * @param turns  The turns left, or 0 to take the charm off.
+     */
+    public void setCharmTurns(Animal animal, int turns) {
+        if (turns > zero) {
+            charmAnimal.put(animal, turns);
+        } else {
+            charmAnimal.remove(animal);
+        }
+    }
+
+    /**
+     * Returns the animals charming the creature and the turns each charm lasts.
+     * 
+     * @return The charming animals and their turns left.
+     */
+    public Map<Animal, Integer> getCharmAnimals() {
+        return charmAnimal;
+    }
+
+    /**
+     * Returns the animals used as a shield by the creature, once for each
+     * shield.
+     * 
+     * @return The shielding animals.
+     */
+    public List<Animal> getShieldAnimals() {
+        return shieldAnimal;
+    }
+
     /**
      * Checks if a given animal is used as a shield by the creature.
      * 
@@ -150,6 +195,15 @@ public class Creature {
         confusedByAnimal = animal;
     }
 
+    /**
+     * Returns the animal that has caused confusion to this animal.
+     *
+     * @return The animal causing confusion, or null if none has.
+     */
+    public Animal getConfusedAnimal() {
+        return confusedByAnimal;
+    }
+
     /**
      * Sets the description of the creature.
      * 
@@ -157,6 +211,7 @@ public class Creature {
      */
     public void setDescription(String description) {
         this.description = description;
+        this.descriptionJson = JsonOutput.member("description", description);
     }
 
     /**
@@ -249,4 +304,64 @@ public class Creature {
 
         return creatureJsonBuilder.build();
     }
+
+    /**
+     * Writes the state of this creature as a JSON object straight to the output,
+     * without building a JsonObject first. The description is spliced in already
+     * serialized. The output is the same as that of {@link #toJson()}, or leaves
+     * the description out in lean mode.
+     *
+     * @param out  The output to write to, positioned where a value of an array
+     *             may be written.
+     * @param lean Whether to leave the description out.
+     */
+    public void writeJson(JsonOutput out, boolean lean) {
+        startJson(out, lean, this.confused);
+        for (Animal animal : this.charmAnimal.keySet()) {
+            out.write(animal.getName(), this.charmAnimal.get(animal));
+        }
+        out.endObject().endObject();
+    }
+
+    /**
+     * Writes the creature as a JSON object the way {@link #writeJson(JsonOutput,
+     * boolean)} does, but with the given confusion and charms in place of the
+     * creature's own. This is how a snapshot writes the creature as it was when
+     * the snapshot was taken.
+     *
+     * @param out      The output to write to, positioned where a value of an
+     *                 array may be written.
+     * @param lean     Whether to leave the description out.
+     * @param confused The confusion state written.
+     * @param charm    The turns each charming animal, named, keeps the creature
+     *                 charmed.
+     */
+    public void writeJson(JsonOutput out, boolean lean, boolean confused, Map<String, Integer> charm) {
+        startJson(out, lean, confused);
+        for (Map.Entry<String, Integer> entry : charm.entrySet()) {
+            out.write(entry.getKey(), entry.getValue());
+        }
+        out.endObject().endObject();
+    }
+
+    /**
+     * Writes the start of the creature's JSON object, up to and including the
+     * opening of its charm object.
+     *
+     * @param out      The output to write to.
+     * @param lean     Whether to leave the description out.
+     * @param confused The confusion state written.
+     */
+    private void startJson(JsonOutput out, boolean lean, boolean confused) {
+        out.startObject()
+                .write("name", getName())
+                .write("type", "Creature")
+                .write("shortName", getShortName());
+        if (!lean) {
+            out.fragment(descriptionJson);
+        }
+        out.write("attack", attackValue)
+                .write("confused", confused)
+                .startObject("charm");
+    }
 }
@@ -0,0 +1,129 @@
+package woodland;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pushes the state of one game to every client subscribed to it as a stream of
+ * Server-Sent Events. Each new version of the state is turned into an event
+ * once and the same bytes are handed to every subscriber, so the cost of a
+ * change does not grow with the number of clients watching the game.
+ *
+ * Subscribers only ever need the latest state, so a subscriber that cannot keep
+ * up keeps the most recent event it was offered and drops the ones before it
+ * rather than buffering them.
+ */
+public class EventStream {
+    /**
+     * A comment line sent on a stream that has been quiet for a while.
+     */
+    static final byte[] HEARTBEAT = ":\n\n".getBytes(StandardCharsets.US_ASCII);
+
+    private Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private long version = -1;
+    private byte[] event;
+    private long published = -1;
+
+    /**
+     * A client receiving the events of a game.
+     */
+    public interface Subscriber {
+        /**
+         * Offers the subscriber a new event. The subscriber sends it when it can,
+         * replacing any earlier event it has not sent yet. This must not block.
+         *
+         * @param event The bytes of the event, shared with other subscribers.
+         */
+        void offer(byte[] event);
+
+        /**
+         * Tells the subscriber the stream has ended because the game was removed.
+         */
+        void end();
+    }
+
+    /**
+     * Subscribes a client to the stream and offers it the current state right
+     * away, so it does not have to fetch the state separately. The caller must
+     * hold the session's read or write lock, so no change is published between
+     * the current state and the subscription.
+     *
+     * @param subscriber The client subscribing.
+     * @param version    The current version of the state.
+     * @param state      The current state as JSON.
+     */
+    public void subscribe(Subscriber subscriber, long version, byte[] state) {
+        subscriber.offer(eventFor(version, state));
+        subscribers.add(subscriber);
+    }
+
+    /**
+     * Unsubscribes a client, usually because it disconnected.
+     *
+     * @param subscriber The client unsubscribing.
+     */
+    public void unsubscribe(Subscriber subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    /**
+     * Publishes a new version of the state to every subscriber. Nothing is sent
+     * if the version has been published already. The caller must hold the
+     * session's write lock.
+     *
+     * @param version The version of the state.
+     * @param state   The state as JSON.
+     */
+    public void publish(long version, byte[] state) {
+        if (version == published) {
+            return;
+        }
+        published = version;
+        byte[] latest = eventFor(version, state);
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(latest);
+        }
+    }
+
+    /**
+     * Ends the stream for every subscriber.
+     */
+    public void close() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.end();
+        }
+        subscribers.clear();
+    }
+
+    /**
+     * Returns the number of clients subscribed to the stream.
+     *
+     * @return The number of subscribers.
+     */
+    public int size() {
+        return subscribers.size();
+    }
+
+    /**
+     * Returns the event for the given version of the state, building it only if
+     * it is not the event built last.
+     *
+     * @param version The version of the state.
+     * @param state   The state as JSON.
+     * @return The bytes of the event.
+     */
+    private synchronized byte[] eventFor(long version, byte[] state) {
+        if (version != this.version) {
+            byte[] head = ("id: " + version + "\nevent: state\ndata: ").getBytes(StandardCharsets.UTF_8);
+            byte[] built = new byte[head.length + state.length + 2];
+            System.arraycopy(head, 0, built, 0, head.length);
+            System.arraycopy(state, 0, built, head.length, state.length);
+            built[built.length - 2] = '\n';
+            built[built.length - 1] = '\n';
+            this.version = version;
+            this.event = built;
+        }
+        return event;
+    }
+}
@@ -1,8 +1,12 @@
 package woodland;
 
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.SplittableRandom;
 
 import javax.json.Json;
 import javax.json.JsonArray;
@@ -20,6 +24,7 @@ import woodland.Creatures.DeceptiveDragon;
 import woodland.Creatures.PrecociousPhoenix;
 import woodland.Creatures.SassySphinx;
 import woodland.Creatures.UnderAppreciatedUnicorn;
+import woodland.Moveables.MoveTable;
 import woodland.Spells.Spell;
 
 /**
@@ -29,10 +34,44 @@ import woodland.Spells.Spell;
  * other operations.
  */
 public class Game {
+    private static final String[] ANIMAL_NAMES = {"Rabbit", "Fox", "Deer", "Owl", "Badger"};
+    private static final Map<String, Integer> ANIMAL_ORDINALS = new HashMap<>();
+    private static final String[] CREATURE_NAMES = {"Under Appreciated Unicorn", "Complicated Centaur",
+            "Deceptive Dragon", "Precocious Phoenix", "Sassy Sphinx"};
+    private static final int INDEX_MASK = 7;
+    private static final int LAST_INDEX_SHIFT = 3;
+    private static final int HAS_MOVED = 1 << 6;
+    private static final int CURRENT_USED_SPELL = 1 << 7;
+    private static final int NEXT_USED_SPELL = 1 << 8;
+    private static final int THIS_TURN = 1 << 9;
+    private static final int NEXT_TURN = 1 << 10;
+    private static final int GAME_OVER = 1 << 11;
+    private static final List<Class<? extends Creature>> CREATURE_KINDS = List.of(UnderAppreciatedUnicorn.class,
+            ComplicatedCentaur.class, DeceptiveDragon.class, PrecociousPhoenix.class, SassySphinx.class);
+
+    static {
+        for (int i = 0; i < ANIMAL_NAMES.length; i++) {
+            ANIMAL_ORDINALS.put(ANIMAL_NAMES[i], i);
+        }
+    }
+
     public String status = "";
-    protected final int ROW = 20;
-    protected final int COL = 20;
-    protected Square[][] board;
+    private String turnType = "move";
+    private long version;
+    private ChangeLog changes;
+    private boolean tracking = false;
+    private UndoStack undo;
+    private GameSnapshot snapshot;
+    protected final int ROW;
+    protected final int COL;
+    protected GameConfig config;
+    protected RowIndex board;
+    private Bitboard animalBits;
+    private Bitboard creatureBits;
+    private Bitboard spellBits;
+    private Bitboard visibleBits;
+    private Bitboard animalColumns;
+    private Bitboard creatureColumns;
     protected int turnNumber;
     protected boolean gameOver;
     protected Creature creature;
@@ -46,54 +85,80 @@ public class Game {
     boolean nextAnimalUsedSpell = false;
     boolean thisTurn = false;
     boolean nextTurn = false;
-    static long seed;
+    protected long seed;
     private int zero = 0;
     private int one = 1;
     private int two = 2;
     private int five = 5;
-    private int nineteen = 19;
+    private int seven = 7;
+    private int eight = 8;
     private int ten = 10;
     private int thirty6 = 36;
     private int twenty9 = 29;
     private int fourty2 = 42;
     private int twenty1 = 21;
     private int fourteen = 14;
+    private int changeLogCapacity = 1024;
+    private int undoCapacity = 256;
+
+    /**
+     * Initializes a new game of the original size, a 20 by 20 board with 5
+     * creatures and 10 spells, with a specified random seed.
+     *
+     * @param seed The seed for the random number generator. This ensures that the
+     *             random placements
+     *             and choices are consistent across different runs of the game with
+     *             the same seed.
+     */
+    public Game(long seed) {
+        this(seed, GameConfig.DEFAULT);
+    }
 
     /**
-     * Initializes a new game with a specified random seed. This constructor sets up
+     * Initializes a new game with a specified random seed and board
+     * configuration. This constructor sets up
      * the game
      * board and populates it with animals and creatures at random locations. It
      * also distributes
      * spells throughout the board.
      *
-     * The game board is represented by a 2D array of Square objects. Each square
+     * Only the squares that have been used are stored, in an index sorted row by
+     * row, so a large board costs memory in proportion to what is on it. Each square
      * can have either an
      * animal, a creature, or a spell. The game starts with all animals placed at
      * random positions on
      * the bottom row of the board and creatures scattered throughout the rest of
-     * the board. Spells
-     * are distributed randomly across the board.
+     * the board, the five kinds of creature taking turns. Spells
+     * are distributed randomly across the board. How the squares are picked
+     * is set by the configuration's generator version: version 1, the
+     * default, places everything exactly where earlier versions of the game
+     * did for the same seed, and version 2 deals distinct squares straight
+     * away, which stays fast on boards filled with creatures and spells up to
+     * the limit.
      *
-     * @param seed The seed for the random number generator. This ensures that the
-     *             random placements
-     *             and choices are consistent across different runs of the game with
-     *             the same seed.
+     * @param seed   The seed for the random number generator. This ensures that
+     *               the random placements
+     *               and choices are consistent across different runs of the game
+     *               with the same seed.
+     * @param config The size of the board and how many creatures and spells are
+     *               placed on it.
      */
-    public Game(long seed) {
+    public Game(long seed, GameConfig config) {
 
-        Game.seed = seed;
+        this.seed = seed;
+        this.config = config;
+        ROW = config.getRows();
+        COL = config.getCols();
 
-        board = new Square[ROW][COL];
+        board = new RowIndex(ROW);
+        animalBits = new Bitboard(ROW * COL);
+        creatureBits = new Bitboard(ROW * COL);
+        spellBits = new Bitboard(ROW * COL);
+        visibleBits = new Bitboard(ROW * COL);
+        animalColumns = new Bitboard(ROW * COL);
+        creatureColumns = new Bitboard(ROW * COL);
         gameOver = false;
 
-        for (int i = zero; i < ROW; i++) {
-            for (int j = zero; j < COL; j++) {
-                board[i][j] = new Square(i, j);
-            }
-        }
-
-        Random generator = new Random(seed);
-
         animals = new ArrayList<Animal>();
         animals.add(new Rabbit("Rabbit"));
         animals.add(new Fox("Fox"));
@@ -101,74 +166,533 @@ public class Game {
         animals.add(new Owl("Owl"));
         animals.add(new Badger("Badger"));
 
+        creatures = new ArrayList<Creature>();
+        for (int i = zero; i < config.getCreatures(); i++) {
+            creatures.add(newCreature(i % five));
+        }
+
+        spells = new ArrayList<Spell>();
+        spells.add(Spell.DETECT);
+        spells.add(Spell.HEAL);
+        spells.add(Spell.SHIELD);
+        spells.add(Spell.CONFUSE);
+        spells.add(Spell.CHARM);
+
+        if (config.getGenerator() == GameConfig.GENERATOR_SHUFFLE) {
+            placeShuffled(seed);
+        } else {
+            placeLegacy(seed);
+        }
+
+        changes = new ChangeLog(changeLogCapacity, version);
+        undo = new UndoStack(undoCapacity);
+        tracking = true;
+    }
+
+    /**
+     * Places the animals, creatures and spells the way generator version 1
+     * does: each square is drawn from a {@link Random} seeded with the game's
+     * seed and drawn again while it is taken, so the same seed always gives the
+     * board it gave before generator versions existed. On a board nearly full
+     * of creatures and spells the redraws make this slow.
+     *
+     * @param seed The seed for the random number generator.
+     */
+    private void placeLegacy(long seed) {
+        Random generator = new Random(seed);
+
+        int lastRow = ROW - one;
         for (int i = zero; i < five; i++) {
             int randomNumber = generator.nextInt(COL);
-            while (board[nineteen][randomNumber].hasAnimal()) {
+            while (animalBits.get(lastRow * COL + randomNumber)) {
                 randomNumber = generator.nextInt(COL);
             }
-            board[nineteen][randomNumber].setAnimal(animals.get(i));
-            animals.get(i).setSquare(board[nineteen][randomNumber]);
-            board[nineteen][randomNumber].setVisible(true);
-            animals.get(i).setGame(this);
+            placeAnimal(animals.get(i), lastRow, randomNumber);
         }
 
-        creatures = new ArrayList<Creature>();
-        creatures.add(new UnderAppreciatedUnicorn("Under Appreciated Unicorn", fourteen));
-        creatures.add(new ComplicatedCentaur("Complicated Centaur", thirty6));
-        creatures.add(new DeceptiveDragon("Deceptive Dragon", twenty9));
-        creatures.add(new PrecociousPhoenix("Precocious Phoenix", fourty2));
-        creatures.add(new SassySphinx("Sassy Sphinx", twenty1));
-
-        for (int i = zero; i < five; i++) {
+        for (int i = zero; i < creatures.size(); i++) {
             int row = generator.nextInt(ROW - two) + one;
             int col = generator.nextInt(COL);
-            while (board[row][col].hasCreature()) {
+            while (creatureBits.get(row * COL + col)) {
                 row = generator.nextInt(ROW - two) + one;
                 col = generator.nextInt(COL);
             }
-            Square square = board[row][col];
-            square.setCreature(creatures.get(i));
-            square.setHasCreature(true);
+            placeCreature(creatures.get(i), row, col);
         }
 
-        spells = new ArrayList<Spell>();
-        spells.add(Spell.DETECT);
-        spells.add(Spell.HEAL);
-        spells.add(Spell.SHIELD);
-        spells.add(Spell.CONFUSE);
-        spells.add(Spell.CHARM);
-
-        for (int i = zero; i < ten; i++) {
+        for (int i = zero; i < config.getSpells(); i++) {
             int spellIndex = generator.nextInt(five);
             int row = generator.nextInt(ROW - two) + one;
             int col = generator.nextInt(COL);
-            while (board[row][col].hasCreature() 
-            || board[row][col].hasSpell()) {
+            while (creatureBits.get(row * COL + col) 
+            || spellBits.get(row * COL + col)) {
                 row = generator.nextInt(ROW - two) + one;
                 col = generator.nextInt(COL);
             }
-            board[row][col].setSpell(spells.get(spellIndex));
+            getSquare(row, col).setSpell(spells.get(spellIndex));
         }
     }
 
     /**
-     * Returns the game board.
-     * 
-     * @return The current game board as a 2D array of Squares.
+     * Places the animals, creatures and spells the way generator version 2
+     * does: the animals' columns on the bottom row and the squares of the
+     * creatures and spells between the top and bottom rows are each dealt by a
+     * {@link CellShuffle}, from a {@link SplittableRandom} seeded with the
+     * game's seed. Every square takes one draw and no square is ever drawn
+     * twice, so placing costs the same however full the board is. Creatures
+     * are dealt first, then each spell draws its kind and then its square.
+     *
+     * All the squares are dealt before any is made, and they are then made in
+     * order of row and column, so each is added at the end of its row of the
+     * index rather than in the middle of it.
+     *
+     * @param seed The seed for the random number generator.
+     */
+    private void placeShuffled(long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+
+        int lastRow = ROW - one;
+        CellShuffle columns = new CellShuffle(COL, five);
+        for (int i = zero; i < five; i++) {
+            placeAnimal(animals.get(i), lastRow, columns.next(random));
+        }
+
+        int pieces = creatures.size() + config.getSpells();
+        int[] cells = new int[pieces];
+        int[] kinds = new int[pieces];
+        CellShuffle shuffle = new CellShuffle((ROW - two) * COL, pieces);
+        for (int i = zero; i < creatures.size(); i++) {
+            cells[i] = shuffle.next(random);
+        }
+        for (int i = creatures.size(); i < pieces; i++) {
+            kinds[i] = random.nextInt(five);
+            cells[i] = shuffle.next(random);
+        }
+
+        int[] order = sortByCell(cells);
+        for (int i : order) {
+            int row = cells[i] / COL + one;
+            int col = cells[i] % COL;
+            if (i < creatures.size()) {
+                placeCreature(creatures.get(i), row, col);
+            } else {
+                getSquare(row, col).setSpell(spells.get(kinds[i]));
+            }
+        }
+    }
+
+    /**
+     * Sorts squares numbered row by row, with a counting sort by column and
+     * then a stable one by row, so the sort takes time in proportion to the
+     * number of squares and the size of the board's sides.
+     *
+     * @param cells The squares, numbered from 0 row by row.
+     * @return The indexes of the squares, in order of square.
+     */
+    private int[] sortByCell(int[] cells) {
+        int[] byCol = new int[cells.length];
+        int[] counts = new int[COL + one];
+        for (int cell : cells) {
+            counts[cell % COL + one]++;
+        }
+        for (int i = zero; i < COL; i++) {
+            counts[i + one] += counts[i];
+        }
+        for (int i = zero; i < cells.length; i++) {
+            byCol[counts[cells[i] % COL]++] = i;
+        }
+
+        int[] byRow = new int[cells.length];
+        counts = new int[ROW + one];
+        for (int cell : cells) {
+            counts[cell / COL + one]++;
+        }
+        for (int i = zero; i < ROW; i++) {
+            counts[i + one] += counts[i];
+        }
+        for (int i : byCol) {
+            byRow[counts[cells[i] / COL]++] = i;
+        }
+        return byRow;
+    }
+
+    /**
+     * Puts an animal on a square of the bottom row as the game starts, making
+     * the square visible.
+     *
+     * @param animal The animal.
+     * @param row    The row of the square.
+     * @param col    The column of the square.
+     */
+    private void placeAnimal(Animal animal, int row, int col) {
+        Square square = getSquare(row, col);
+        square.setAnimal(animal);
+        animal.setSquare(square);
+        square.setVisible(true);
+        animal.setGame(this);
+    }
+
+    /**
+     * Puts a creature on a square as the game starts.
+     *
+     * @param creature The creature.
+     * @param row      The row of the square.
+     * @param col      The column of the square.
+     */
+    private void placeCreature(Creature creature, int row, int col) {
+        Square square = getSquare(row, col);
+        square.setCreature(creature);
+        square.setHasCreature(true);
+    }
+
+    /**
+     * Creates a creature of one of the five kinds, with the kind's name and
+     * attack value.
+     *
+     * @param kind The kind of creature, from 0 to 4 in the order of
+     *             {@link #creatureOrdinal(Creature)}.
+     * @return The new creature.
+     */
+    private Creature newCreature(int kind) {
+        switch (kind) {
+            case 0:
+                return new UnderAppreciatedUnicorn(CREATURE_NAMES[kind], fourteen);
+            case 1:
+                return new ComplicatedCentaur(CREATURE_NAMES[kind], thirty6);
+            case 2:
+                return new DeceptiveDragon(CREATURE_NAMES[kind], twenty9);
+            case 3:
+                return new PrecociousPhoenix(CREATURE_NAMES[kind], fourty2);
+            default:
+                return new SassySphinx(CREATURE_NAMES[kind], twenty1);
+        }
+    }
+
+    /**
+     * Returns the version of the game state. The version starts at zero and is
+     * increased by every change to the state clients see, so two reads that
+     * return the same version saw the same state.
+     *
+     * @return The current state version.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Marks part of the game state as changed by moving to the next version and
+     * recording the change in the change log. Changes made while the game is
+     * being set up are not recorded, and neither are changes made by a move
+     * that can be undone, since the move is taken back before anyone reads the
+     * state.
+     *
+     * @param change The index of the square that changed, or one of the
+     *               {@link ChangeLog} field codes.
+     */
+    protected void changed(int change) {
+        if (tracking && undo.depth() == zero) {
+            version++;
+            changes.record(version, change);
+        }
+    }
+
+    /**
+     * Marks a square as changed. This is called by a square whenever its
+     * contents or visibility change, and by the game whenever an animal or
+     * creature standing on a square changes. The square's bits in the bitboards
+     * are brought in line with its flags.
+     *
+     * @param square The square that changed.
      */
-    public Square[][] getBoard() {
-        return board;
+    void changed(Square square) {
+        updateBits(square);
+        changed(square.row * COL + square.col);
     }
 
     /**
-     * Fetches the square at the specified row and column.
+     * Brings a square's bits in the bitboards in line with its flags.
+     *
+     * @param square The square.
+     */
+    private void updateBits(Square square) {
+        int index = square.row * COL + square.col;
+        int columnIndex = square.col * ROW + square.row;
+        animalBits.set(index, square.hasAnimal);
+        creatureBits.set(index, square.hasCreature);
+        spellBits.set(index, square.hasSpell);
+        visibleBits.set(index, square.visible);
+        animalColumns.set(columnIndex, square.hasAnimal);
+        creatureColumns.set(columnIndex, square.hasCreature);
+    }
+
+    /**
+     * Returns whether any square in part of a row holds an animal.
+     *
+     * @param row     The row.
+     * @param fromCol The first column of the part.
+     * @param toCol   The last column of the part.
+     * @return true if at least one of the squares holds an animal.
+     */
+    public boolean animalInRow(int row, int fromCol, int toCol) {
+        return animalBits.any(row * COL + fromCol, row * COL + toCol + one);
+    }
+
+    /**
+     * Returns whether any square in part of a column holds an animal.
+     *
+     * @param col     The column.
+     * @param fromRow The first row of the part.
+     * @param toRow   The last row of the part.
+     * @return true if at least one of the squares holds an animal.
+     */
+    public boolean animalInColumn(int col, int fromRow, int toRow) {
+        return animalColumns.any(col * ROW + fromRow, col * ROW + toRow + one);
+    }
+
+    /**
+     * Returns whether any square in part of a row holds a creature.
+     *
+     * @param row     The row.
+     * @param fromCol The first column of the part.
+     * @param toCol   The last column of the part.
+     * @return true if at least one of the squares holds a creature.
+     */
+    public boolean creatureInRow(int row, int fromCol, int toCol) {
+        return creatureBits.any(row * COL + fromCol, row * COL + toCol + one);
+    }
+
+    /**
+     * Returns whether any square in part of a column holds a creature.
+     *
+     * @param col     The column.
+     * @param fromRow The first row of the part.
+     * @param toRow   The last row of the part.
+     * @return true if at least one of the squares holds a creature.
+     */
+    public boolean creatureInColumn(int col, int fromRow, int toRow) {
+        return creatureColumns.any(col * ROW + fromRow, col * ROW + toRow + one);
+    }
+
+    /**
+     * Finds every square an animal could move to from where it stands, whether
+     * or not it is the animal's turn. Squares are numbered row by row.
+     *
+     * @param animal The animal.
+     * @return A new bitboard with the bits of the destinations set.
+     */
+    public Bitboard legalMoves(Animal animal) {
+        Bitboard moves = new Bitboard(ROW * COL);
+        legalMoves(animal, moves);
+        return moves;
+    }
+
+    /**
+     * Finds every square an animal could move to from where it stands, into a
+     * bitboard the caller reuses. The animal's move table is walked ray by ray
+     * from its square; a square is a destination if it is on the board and holds
+     * no animal, and a ray that stops at animals ends at the first one. The
+     * animal's own square is included only if it is marked as empty, which
+     * happens when a move cut short by a creature puts two animals on one square
+     * and the other one leaves. This gives the same squares as trying
+     * {@link Animal#move(int, int, int, int)} on every square, without changing
+     * the game.
+     *
+     * @param animal The animal.
+     * @param moves  A bitboard of {@link #getRows()} times {@link #getCols()}
+     *               squares. It is cleared, then the bits of the destinations
+     *               are set.
+     */
+    public void legalMoves(Animal animal, Bitboard moves) {
+        moves.clear();
+        MoveTable table = animal.getMoveTable();
+        int row = animal.getSquare().row;
+        int col = animal.getSquare().col;
+        if (table.size() > zero && !animalBits.get(row * COL + col)) {
+            moves.set(row * COL + col, true);
+        }
+        for (int ray = zero; ray < table.size(); ray++) {
+            int rowStep = table.getRowStep(ray);
+            int colStep = table.getColStep(ray);
+            int reach = table.getReach(ray) == MoveTable.TO_EDGE ? Math.max(ROW, COL) : table.getReach(ray);
+            int newRow = row;
+            int newCol = col;
+            for (int step = zero; step < reach; step++) {
+                newRow += rowStep;
+                newCol += colStep;
+                if (newRow < zero || newRow >= ROW || newCol < zero || newCol >= COL) {
+                    break;
+                }
+                int index = newRow * COL + newCol;
+                if (!animalBits.get(index)) {
+                    moves.set(index, true);
+                } else if (table.stopsAtAnimal(ray)) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the bitboard of the squares holding an animal, numbered row by row.
+     *
+     * @return The animal bitboard.
+     */
+    public Bitboard getAnimalBits() {
+        return animalBits;
+    }
+
+    /**
+     * Returns the bitboard of the squares holding a creature, numbered row by
+     * row.
+     *
+     * @return The creature bitboard.
+     */
+    public Bitboard getCreatureBits() {
+        return creatureBits;
+    }
+
+    /**
+     * Returns the bitboard of the squares holding a spell, numbered row by row.
+     *
+     * @return The spell bitboard.
+     */
+    public Bitboard getSpellBits() {
+        return spellBits;
+    }
+
+    /**
+     * Returns the bitboard of the visible squares, numbered row by row.
+     *
+     * @return The visibility bitboard.
+     */
+    public Bitboard getVisibleBits() {
+        return visibleBits;
+    }
+
+    /**
+     * Returns the log of changes made to this game, used to send clients only
+     * what changed since the version they already have.
+     *
+     * @return The change log.
+     */
+    public ChangeLog getChangeLog() {
+        return changes;
+    }
+
+    /**
+     * Takes a snapshot of the game's state as it is now. The snapshot is made
+     * from the last one taken, copying only the squares that changed since,
+     * and is the same object as the last one if nothing has changed.
+     *
+     * @return The snapshot.
+     * @throws IllegalStateException If a move made with
+     *                               {@link #make(GameCommand)} has not been
+     *                               undone.
+     */
+    public GameSnapshot snapshot() {
+        if (undo.depth() > zero) {
+            throw new IllegalStateException("A move is being made");
+        }
+        if (snapshot == null || !changes.covers(snapshot.getVersion())) {
+            snapshot = GameSnapshot.of(this);
+        } else if (snapshot.getVersion() != version) {
+            snapshot = snapshot.advance(this);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Continues the version numbering of a game this game replaces, so that the
+     * versions clients see keep increasing across a reset.
+     *
+     * @param previous The game this game replaces.
+     */
+    void continueVersionsOf(Game previous) {
+        version = Math.max(version, previous.version + one);
+        changes.restartAt(version);
+    }
+
+    /**
+     * Returns the configuration the game was created with.
+     *
+     * @return The size of the board and the number of creatures and spells.
+     */
+    public GameConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Numbers a square row by row, checking that it is on the board.
+     *
+     * @param row The row of the square.
+     * @param col The column of the square.
+     * @return The number of the square.
+     * @throws ArrayIndexOutOfBoundsException If the square is not on the board.
+     */
+    private int index(int row, int col) {
+        checkOnBoard(row, col);
+        return row * COL + col;
+    }
+
+    /**
+     * Checks that a square is on the board.
+     *
+     * @param row The row of the square.
+     * @param col The column of the square.
+     * @throws ArrayIndexOutOfBoundsException If the square is not on the board.
+     */
+    private void checkOnBoard(int row, int col) {
+        if (row < zero || row >= ROW || col < zero || col >= COL) {
+            throw new ArrayIndexOutOfBoundsException("Square " + row + ", " + col + " is not on the board");
+        }
+    }
+
+    /**
+     * Fetches the square at the specified row and column. Squares are created
+     * the first time they are fetched and kept for the rest of the game, so
+     * this is for squares about to be written to; checks that only read a
+     * square use {@link #findSquare(int, int)} or {@link #hasAnimal(int, int)}.
      * 
      * @param row The row of the desired square.
      * @param col The column of the desired square.
      * @return The square at the given row and column.
+     * @throws ArrayIndexOutOfBoundsException If the square is not on the board.
      */
     public Square getSquare(int row, int col) {
-        return board[row][col];
+        checkOnBoard(row, col);
+        Square square = board.get(row, col);
+        if (square == null) {
+            square = new Square(this, row, col);
+            board.add(square);
+        }
+        return square;
+    }
+
+    /**
+     * Looks up the square at the specified row and column without creating it.
+     *
+     * @param row The row of the square.
+     * @param col The column of the square.
+     * @return The square, or null if nothing has been placed on it, revealed or
+     *         moved onto yet.
+     * @throws ArrayIndexOutOfBoundsException If the square is not on the board.
+     */
+    public Square findSquare(int row, int col) {
+        checkOnBoard(row, col);
+        return board.get(row, col);
+    }
+
+    /**
+     * Checks whether an animal stands on the square at the specified row and
+     * column, from the animal bitboard and without creating the square.
+     *
+     * @param row The row of the square.
+     * @param col The column of the square.
+     * @return true if an animal is on the square, false otherwise.
+     * @throws ArrayIndexOutOfBoundsException If the square is not on the board.
+     */
+    public boolean hasAnimal(int row, int col) {
+        return animalBits.get(index(row, col));
     }
 
     /**
@@ -180,9 +704,31 @@ public class Game {
      * @param string The message that describes the current status of the game.
      */
     public void setStatus(String string) {
+        changed(ChangeLog.STATUS);
         this.status = string;
     }
 
+    /**
+     * Returns the type of action the current animal takes next, either "move" or
+     * "spell".
+     *
+     * @return The current turn type.
+     */
+    public String getTurnType() {
+        return turnType;
+    }
+
+    /**
+     * Sets the type of action the current animal takes next. This controls the
+     * flow of the game between moving and casting spells.
+     *
+     * @param turnType The new turn type, either "move" or "spell".
+     */
+    public void setTurnType(String turnType) {
+        changed(ChangeLog.TURN_TYPE);
+        this.turnType = turnType;
+    }
+
     /**
      * Moves the specified animal from one position to another on the board.
      *
@@ -193,8 +739,8 @@ public class Game {
      * @param newCol The new column to move the animal to.
      */
     public void moveAnimal(Animal animal, int oldRow, int oldCol, int newRow, int newCol) {
-        Square destination = board[newRow][newCol];
-        if (board[newRow][newCol].hasCreature()) {
+        Square destination = findSquare(newRow, newCol);
+        if (destination != null && destination.hasCreature()) {
             setStatus("The last move was sucessful");
             hasMoved = true;
             thisTurn = true;
@@ -205,11 +751,11 @@ public class Game {
             thisTurn = true;
             nextTurn = false;
             destination = getNextSquareWithCreature(oldRow, oldCol, newRow, newCol);
-        } else if (board[newRow][newCol].hasSpell()) {
+        } else if (destination != null && destination.hasSpell()) {
             hasMoved = true;
             thisTurn = true;
             nextTurn = false;
-            saveSpell(animal, board[newRow][newCol].getSpell());
+            saveSpell(animal, destination.getSpell());
             setStatus("The last move was successful.");
         } else {
             hasMoved = true;
@@ -217,7 +763,14 @@ public class Game {
             nextTurn = false;
             setStatus("The last move was successful.");
         }
-        board[oldRow][oldCol].removeAnimal();
+        if (destination == null) {
+            destination = getSquare(newRow, newCol);
+        }
+        Square origin = getSquare(oldRow, oldCol);
+        saveSquare(origin);
+        saveSquare(destination);
+        saveAnimalSquare(animal);
+        origin.removeAnimal();
         destination.setAnimal(animal);
         destination.setVisible(true);
         animal.setSquare(destination);
@@ -238,42 +791,42 @@ public class Game {
      *         if no such square exists
      */
     public Square getNextSquareWithCreature(int oldRow, int oldCol, int newRow, int newCol) {
-        if (oldCol != newCol) {
-            int colStep = (oldCol < newCol) ? one : -one;
-
-            for (int col = oldCol + colStep; (colStep > zero) ? col <= newCol : col >= newCol; col += colStep) {
-                if (this.getSquare(newRow, col).hasCreature()) {
-                    return board[newRow][col];
-                }
-            }
+        int found;
+        if (oldCol < newCol) {
+            found = creatureBits.next(newRow * COL + oldCol + one, newRow * COL + newCol + one);
+        } else if (oldCol > newCol) {
+            found = creatureBits.previous(newRow * COL + newCol, newRow * COL + oldCol);
         } else {
-            for (int row = oldRow + one; row <= newRow; row++) {
-                if (this.getSquare(row, newCol).hasCreature()) {
-                    return board[row][newCol];
-                }
+            found = creatureColumns.next(newCol * ROW + oldRow + one, newCol * ROW + newRow + one);
+            if (found >= zero) {
+                found = (found - newCol * ROW) * COL + newCol;
             }
         }
-        return null;
+        return found < zero ? null : getSquare(found / COL, found % COL);
     }
 
     /**
-     * Simulates an attack on the animal by a creature.
+     * Simulates an attack on the animal by a creature. The state only changes,
+     * and its version only moves on, if the attack takes life points; an
+     * animal that the creature is charmed, confused or shielded against is left
+     * as it is. An animal that is dead already is still attacked.
      */
     public void attackAnimal() {
-        Square currentAnimalSquare = animals.get(currentAnimalIndex).getSquare();
-        if (currentAnimalSquare.hasCreature()) {
-            if (animals.get(currentAnimalIndex).getSquare().getCreature().isCharmed(animals.get(currentAnimalIndex)) 
-            || animals.get(currentAnimalIndex).getSquare().getCreature().isConfused() 
-            || animals.get(currentAnimalIndex).getSquare().getCreature()
-                            .isShieldAnimal(animals.get(currentAnimalIndex))) {
+        Animal animal = animals.get(currentAnimalIndex);
+        Square square = animal.getSquare();
+        if (square.hasCreature()) {
+            Creature creature = square.getCreature();
+            if (creature.isCharmed(animal) || creature.isConfused() || creature.isShieldAnimal(animal)) {
                 return;
-            } else {
-                animals.get(currentAnimalIndex)
-                        .attacked(animals.get(currentAnimalIndex).getSquare().getCreature().getAttackValue());
+            } else if (creature.getAttackValue() != zero) {
+                changed(square);
+                saveLife(animal);
+                animal.attacked(creature.getAttackValue());
             }
         }
-        if (!animals.get(currentAnimalIndex).isAlive()) {
+        if (!animal.isAlive() && !gameOver) {
             gameOver = true;
+            changed(ChangeLog.GAME_OVER);
         }
     }
 
@@ -284,6 +837,8 @@ public class Game {
      * @param spell  The spell to save.
      */
     public void saveSpell(Animal animal, Spell spell) {
+        changed(animal.getSquare());
+        saveSpellCount(animal, spell);
         animal.addSpell(spell);
     }
 
@@ -302,6 +857,7 @@ public class Game {
      * @param spell  the spell to be cast
      */
     public void castSpell(Animal animal, Spell spell) {
+        changed(animal.getSquare());
         Square currentSquare = animal.getSquare();
         int currentRow = currentSquare.row;
         int currentCol = currentSquare.col;
@@ -316,6 +872,7 @@ public class Game {
                 if (animal.getSquare().hasCreature()) {
                     Creature creature = animal.getSquare().getCreature();
                     creature.addShieldAnimal(animal);
+                    saveShield(creature, animal);
                 }
                 setStatus("The last spell was successful.");
                 break;
@@ -324,12 +881,16 @@ public class Game {
                 for (int i = currentRow - one; i <= currentRow + one; i++) {
                     for (int j = currentCol - one; j <= currentCol + one; j++) {
                         if (i != currentRow && j != currentCol) {
-                            if (board[i][j].hasCreature()) {
-                                board[i][j].getCreature().addCharmAnimal(animal);
+                            if (creatureBits.get(index(i, j))) {
+                                Square square = getSquare(i, j);
+                                changed(square);
+                                saveCharm(square.getCreature(), animal);
+                                square.getCreature().addCharmAnimal(animal);
                             }
                         }
                     }
                 }
+                saveSpellCount(animal, Spell.CHARM);
                 animal.updateSpell(Spell.CHARM);
                 setStatus("The last spell was successful.");
                 break;
@@ -338,13 +899,17 @@ public class Game {
                 for (int i = currentRow - one; i <= currentRow + one; i++) {
                     for (int j = currentCol - one; j <= currentCol + one; j++) {
                         if (i != currentRow && j != currentCol) {
-                            if (board[i][j].hasCreature()) {
-                                board[i][j].getCreature().setConfused(true);
-                                board[i][j].getCreature().setConfusedAnimal(animal);
+                            if (creatureBits.get(index(i, j))) {
+                                Square square = getSquare(i, j);
+                                changed(square);
+                                saveConfuse(square.getCreature());
+                                square.getCreature().setConfused(true);
+                                square.getCreature().setConfusedAnimal(animal);
                             }
                         }
                     }
                 }
+                saveSpellCount(animal, Spell.CONFUSE);
                 animal.updateSpell(Spell.CONFUSE);
                 setStatus("The last spell was successful.");
                 break;
@@ -352,17 +917,22 @@ public class Game {
             case DETECT:
                 for (int i = currentRow - one; i <= currentRow + one; i++) {
                     for (int j = currentCol - one; j <= currentCol + one; j++) {
-                        int variableI = Math.min((Math.max(i, zero)), nineteen);
-                        int variableJ = Math.min((Math.max(j, zero)), nineteen);
-                        board[variableI][variableJ].reveal();
+                        int variableI = Math.min((Math.max(i, zero)), ROW - one);
+                        int variableJ = Math.min((Math.max(j, zero)), COL - one);
+                        Square square = getSquare(variableI, variableJ);
+                        saveSquare(square);
+                        square.reveal();
                     }
                 }
+                saveSpellCount(animal, Spell.DETECT);
                 animal.updateSpell(Spell.DETECT);
                 setStatus("The last spell was successful.");
                 break;
 
             case HEAL:
+                saveLife(animal);
                 animal.heal();
+                saveSpellCount(animal, Spell.HEAL);
                 animal.updateSpell(Spell.HEAL);
                 setStatus("The last spell was successful.");
                 break;
@@ -395,6 +965,15 @@ public class Game {
         return animals;
     }
 
+    /**
+     * Retrieves the list of creatures in the game.
+     * 
+     * @return A list of creatures.
+     */
+    public List<Creature> getCreatures() {
+        return creatures;
+    }
+
     /**
      * Retrieves the name of the current animal in turn.
      *
@@ -421,6 +1000,7 @@ public class Game {
      * for the next turn, to decide which animal should be next.
      */
     public void updateCurrentAnimalIndex() {
+        changed(ChangeLog.TURN);
         lastAnimalIndex = currentAnimalIndex;
         currentAnimalIndex = (currentAnimalIndex + one) % five;
 
@@ -436,6 +1016,311 @@ public class Game {
         hasMoved = false;
     }
 
+    /**
+     * Plays a move or spell command sent by a client, checking that it is the
+     * turn of the animal named and that the move or spell is allowed.
+     *
+     * @param command The decoded command.
+     * @return true if the command was carried out; false otherwise.
+     */
+    public boolean play(GameCommand command) {
+        if (command.getType() == GameCommand.Type.MOVE) {
+            return playMove(command);
+        } else if (command.getType() == GameCommand.Type.SPELL) {
+            return playSpell(command);
+        }
+        return false;
+    }
+
+    /**
+     * Performs a move command if it's valid.
+     * The method verifies that the specified animal can make the move based on the
+     * game's current state.
+     * If the move is valid, the method updates the game state accordingly and may
+     * change the turn type to 'spell'.
+     *
+     * @param command The decoded move command.
+     * @return true if the move was successfully executed; false otherwise.
+     */
+    public boolean playMove(GameCommand command) {
+        int row = command.getRow();
+        int col = command.getCol();
+
+        Animal specAnimal = animals.get(command.getAnimal());
+        Square currentSquare = specAnimal.getSquare();
+        int currrentRow = currentSquare.getRow();
+        int currentCol = currentSquare.getCol();
+
+        String currentAnimal = getCurrentAnimalName();
+
+        if (specAnimal.getName().equals(currentAnimal) && getTurnType().equals("move")
+                && specAnimal.move(currrentRow, currentCol, row, col)) {
+            setStatus("The last move was successful.");
+            thisTurn = true;
+            if (command.getType() == GameCommand.Type.MOVE) {
+                setTurnType("spell");
+            }
+            return true;
+        } else if (specAnimal.getName()
+                .equals(animals.get((currentAnimalIndex + one) % five).getName())
+                && specAnimal.move(currrentRow, currentCol, row, col)) {
+            specAnimal.move(currrentRow, currentCol, row, col);
+            setStatus("The last move was successful.");
+            nextTurn = true;
+            attackAnimal();
+            updateCurrentAnimalIndex();
+            if (command.getType() == GameCommand.Type.MOVE) {
+                setTurnType("spell");
+            }
+            return true;
+        } else if (!specAnimal.getName().equals(currentAnimal)
+                || !currentAnimal
+                        .equals(animals.get((currentAnimalIndex + one) % five).getName().trim())) {
+            setStatus("The last move was invalid.");
+            return false;
+        } else if (!specAnimal.move(currrentRow, currentCol, row, col)) {
+            setStatus("The last move was invalid.");
+            return false;
+        } else {
+            setStatus("The last move was invalid.");
+            return false;
+        }
+    }
+
+    /**
+     * Executes a spell command if it is valid.
+     * The method checks if the specified animal can cast the spell and updates the
+     * game state based on the result.
+     * If a spell action is performed, the turn type is set to 'move', indicating
+     * the next action should be a move.
+     *
+     * @param command The decoded spell command.
+     * @return true if the spell action was successfully executed; false otherwise.
+     */
+    public boolean playSpell(GameCommand command) {
+        if (command.getType() == GameCommand.Type.SPELL) {
+            setTurnType("move");
+        }
+
+        Animal specAnimal = animals.get(command.getAnimal());
+        if (!specAnimal.getName().equals(command.getAnimalName())) {
+            setStatus("The last move was invalid.");
+            return false;
+        }
+
+        for (Spell spellObject : specAnimal.getSpells().keySet()) {
+            if (spellObject == command.getSpell()) {
+                castSpell(specAnimal, spellObject);
+                setStatus("The last spell was successful.");
+                currentAnimalUsedSpell = false;
+                nextAnimalUsedSpell = false;
+                attackAnimal();
+            } else {
+                attackAnimal();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Plays a command so that it can be taken back with {@link #unmake()}, for
+     * exploring moves without building a new game for each one. Before the
+     * command changes a square, an animal's life points, spells or square, or
+     * a creature's charms, shields or confusion, the old value is pushed on the
+     * game's undo stack; the turn fields are saved once up front.
+     *
+     * Moves can be made on top of each other and are undone in the reverse
+     * order. A made move is not given a state version and is not recorded in
+     * the change log, so the move must be undone while the caller still holds
+     * the game, before anyone else reads its state.
+     *
+     * @param command The decoded command.
+     * @return true if the command was carried out; false otherwise. Either way
+     *         it is undone by {@link #unmake()}.
+     */
+    public boolean make(GameCommand command) {
+        undo.mark();
+        saveTurn();
+        try {
+            return play(command);
+        } catch (RuntimeException e) {
+            unmake();
+            throw e;
+        }
+    }
+
+    /**
+     * Takes back the last move made with {@link #make(GameCommand)}, restoring
+     * everything it changed.
+     *
+     * @throws IllegalStateException If there is no move to take back.
+     */
+    public void unmake() {
+        int mark = undo.popMark();
+        for (int i = undo.size() - one; i >= mark; i--) {
+            restore(i);
+        }
+        undo.truncate(mark);
+    }
+
+    /**
+     * Puts back the value saved in one entry of the undo stack.
+     *
+     * @param i The index of the entry.
+     */
+    private void restore(int i) {
+        Object owner = undo.owner(i);
+        Object ref = undo.ref(i);
+        int value = undo.value(i);
+        switch (undo.kind(i)) {
+            case UndoStack.SQUARE:
+                Square square = (Square) owner;
+                square.visible = (value & one) != zero;
+                square.hasAnimal = (value & two) != zero;
+                square.animal = (Animal) ref;
+                updateBits(square);
+                break;
+            case UndoStack.LIFE:
+                ((Animal) owner).setLifePoints(value);
+                break;
+            case UndoStack.ANIMAL_SQUARE:
+                ((Animal) owner).setSquare((Square) ref);
+                break;
+            case UndoStack.SPELL_COUNT:
+                if (value == zero) {
+                    ((Animal) owner).getSpells().remove(ref);
+                } else {
+                    ((Animal) owner).getSpells().put((Spell) ref, value);
+                }
+                break;
+            case UndoStack.CHARM:
+                ((Creature) owner).setCharmTurns((Animal) ref, value);
+                break;
+            case UndoStack.SHIELD:
+                ((Creature) owner).updateShieldAnimal((Animal) ref);
+                break;
+            case UndoStack.CONFUSE:
+                ((Creature) owner).setConfused(value != zero);
+                ((Creature) owner).setConfusedAnimal((Animal) ref);
+                break;
+            case UndoStack.TURN:
+                status = (String) owner;
+                turnType = (String) ref;
+                currentAnimalIndex = value & INDEX_MASK;
+                lastAnimalIndex = (value >>> LAST_INDEX_SHIFT) & INDEX_MASK;
+                hasMoved = (value & HAS_MOVED) != zero;
+                currentAnimalUsedSpell = (value & CURRENT_USED_SPELL) != zero;
+                nextAnimalUsedSpell = (value & NEXT_USED_SPELL) != zero;
+                thisTurn = (value & THIS_TURN) != zero;
+                nextTurn = (value & NEXT_TURN) != zero;
+                gameOver = (value & GAME_OVER) != zero;
+                break;
+        }
+    }
+
+    /**
+     * Saves the turn fields of the game on the undo stack.
+     */
+    private void saveTurn() {
+        int value = currentAnimalIndex | lastAnimalIndex << LAST_INDEX_SHIFT
+                | (hasMoved ? HAS_MOVED : zero)
+                | (currentAnimalUsedSpell ? CURRENT_USED_SPELL : zero)
+                | (nextAnimalUsedSpell ? NEXT_USED_SPELL : zero)
+                | (thisTurn ? THIS_TURN : zero)
+                | (nextTurn ? NEXT_TURN : zero)
+                | (gameOver ? GAME_OVER : zero);
+        undo.push(UndoStack.TURN, status, turnType, value);
+    }
+
+    /**
+     * Saves a square's visibility and animal on the undo stack, if a move is
+     * being made.
+     *
+     * @param square The square about to change.
+     */
+    private void saveSquare(Square square) {
+        if (undo.depth() > zero) {
+            undo.push(UndoStack.SQUARE, square, square.animal,
+                    (square.visible ? one : zero) | (square.hasAnimal ? two : zero));
+        }
+    }
+
+    /**
+     * Saves an animal's life points on the undo stack, if a move is being made.
+     *
+     * @param animal The animal about to be attacked or healed.
+     */
+    private void saveLife(Animal animal) {
+        if (undo.depth() > zero) {
+            undo.push(UndoStack.LIFE, animal, null, animal.getLifePoints());
+        }
+    }
+
+    /**
+     * Saves the square an animal stands on on the undo stack, if a move is being
+     * made.
+     *
+     * @param animal The animal about to move.
+     */
+    private void saveAnimalSquare(Animal animal) {
+        if (undo.depth() > zero) {
+            undo.push(UndoStack.ANIMAL_SQUARE, animal, animal.getSquare(), zero);
+        }
+    }
+
+    /**
+     * Saves how many of a spell an animal holds on the undo stack, if a move is
+     * being made.
+     *
+     * @param animal The animal about to gain or use the spell.
+     * @param spell  The spell.
+     */
+    private void saveSpellCount(Animal animal, Spell spell) {
+        if (undo.depth() > zero) {
+            Integer count = animal.getSpells().get(spell);
+            undo.push(UndoStack.SPELL_COUNT, animal, spell, count == null ? zero : count);
+        }
+    }
+
+    /**
+     * Saves how long a creature stays charmed by an animal on the undo stack, if
+     * a move is being made.
+     *
+     * @param creature The creature about to be charmed.
+     * @param animal   The animal charming it.
+     */
+    private void saveCharm(Creature creature, Animal animal) {
+        if (undo.depth() > zero) {
+            undo.push(UndoStack.CHARM, creature, animal, creature.getCharmTurns(animal));
+        }
+    }
+
+    /**
+     * Records on the undo stack that an animal has just put a shield on a
+     * creature, if a move is being made.
+     *
+     * @param creature The creature shielded.
+     * @param animal   The animal that shielded it.
+     */
+    private void saveShield(Creature creature, Animal animal) {
+        if (undo.depth() > zero) {
+            undo.push(UndoStack.SHIELD, creature, animal, zero);
+        }
+    }
+
+    /**
+     * Saves whether a creature is confused and by whom on the undo stack, if a
+     * move is being made.
+     *
+     * @param creature The creature about to be confused.
+     */
+    private void saveConfuse(Creature creature) {
+        if (undo.depth() > zero) {
+            undo.push(UndoStack.CONFUSE, creature, creature.getConfusedAnimal(),
+                    creature.isConfused() ? one : zero);
+        }
+    }
+
     /**
      * Converts the current state of the game board into a JSON array. The JSON
      * array
@@ -452,19 +1337,193 @@ public class Game {
         for (int i = zero; i < ROW; i++) {
             JsonArrayBuilder boardCol = Json.createArrayBuilder();
             for (int j = zero; j < COL; j++) {
-                JsonArrayBuilder boardContents = Json.createArrayBuilder();
-                if (getSquare(i, j).isVisible()) {
-                    if (getSquare(i, j).getAnimal() != null) {
-                        boardContents.add(getSquare(i, j).getAnimal().toJson());
-                    }
-                    if (getSquare(i, j).getCreature() != null) {
-                        boardContents.add(getSquare(i, j).getCreature().toJson());
-                    }
-                }
-                boardCol.add(boardContents);
+                boardCol.add(squareToJson(i, j));
             }
             boardRow.add(boardCol);
         }
         return boardRow.build();
     }
+
+    /**
+     * Converts the contents of a single square into a JSON array. The array is
+     * empty unless the square is visible, in which case it holds the JSON
+     * representation of the animal and the creature on the square, if any.
+     *
+     * @param row The row of the square.
+     * @param col The column of the square.
+     * @return A JSON array representing what can be seen on the square.
+     */
+    public JsonArray squareToJson(int row, int col) {
+        JsonArrayBuilder boardContents = Json.createArrayBuilder();
+        if (visibleBits.get(index(row, col))) {
+            if (getSquare(row, col).getAnimal() != null) {
+                boardContents.add(getSquare(row, col).getAnimal().toJson());
+            }
+            if (getSquare(row, col).getCreature() != null) {
+                boardContents.add(getSquare(row, col).getCreature().toJson());
+            }
+        }
+        return boardContents.build();
+    }
+
+    /**
+     * Writes the current state of the game board straight to the output as the
+     * value of the named member, in one pass and without building a JsonArray
+     * first. The output is the same as that of {@link #toJson()}, or leaves the
+     * descriptions out in lean mode.
+     *
+     * @param out  The output to write to, positioned inside an object.
+     * @param name The name of the member holding the board.
+     * @param lean Whether to leave the descriptions out.
+     */
+    public void writeJson(JsonOutput out, String name, boolean lean) {
+        out.startArray(name);
+        for (int i = zero; i < ROW; i++) {
+            out.startArray();
+            for (int j = zero; j < COL; j++) {
+                out.startArray();
+                writeSquareJson(out, i, j, lean);
+                out.endArray();
+            }
+            out.endArray();
+        }
+        out.endArray();
+    }
+
+    /**
+     * Writes the board in its sparse form, as members of the enclosing object:
+     * the number of rows and columns, a bitmap of the visible squares and a list
+     * of only the visible squares that hold something. Most squares are hidden or
+     * empty, so this is much smaller than {@link #writeJson(JsonOutput, String,
+     * boolean)}, and its size grows with what is on the board rather than with
+     * the size of the board.
+     *
+     * The bitmap is base64 encoded and has one bit per square, row by row, with
+     * the first square of each byte in its highest bit.
+     *
+     * @param out  The output to write to, positioned inside an object.
+     * @param lean Whether to leave the descriptions out.
+     */
+    public void writeSparseJson(JsonOutput out, boolean lean) {
+        int size = ROW * COL;
+        byte[] visible = new byte[(size + seven) / eight];
+        for (int i = zero; i < visible.length; i++) {
+            long word = visibleBits.word(i / eight);
+            visible[i] = (byte) (Integer.reverse((int) (word >>> (i % eight * eight))) >>> 24);
+        }
+        out.write("rows", ROW)
+                .write("cols", COL)
+                .write("visible", Base64.getEncoder().encodeToString(visible))
+                .startArray("squares");
+        for (int index = visibleBits.next(zero, size); index >= zero; index = visibleBits.next(index + one, size)) {
+            if (animalBits.get(index) || creatureBits.get(index)) {
+                writeSquareEntryJson(out, index / COL, index % COL, lean);
+            }
+        }
+        out.endArray();
+    }
+
+    /**
+     * Writes a square as an object giving its coordinates and its contents:
+     * {"row": r, "col": c, "contents": [...]}. This is how squares are listed in
+     * sparse boards and in deltas.
+     *
+     * @param out  The output to write to, positioned inside an array.
+     * @param row  The row of the square.
+     * @param col  The column of the square.
+     * @param lean Whether to leave the descriptions out.
+     */
+    public void writeSquareEntryJson(JsonOutput out, int row, int col, boolean lean) {
+        out.startObject()
+                .write("row", row)
+                .write("col", col)
+                .startArray("contents");
+        writeSquareJson(out, row, col, lean);
+        out.endArray().endObject();
+    }
+
+    /**
+     * Writes the JSON representation of the animal and the creature on a square,
+     * if the square is visible, straight to the output. These are the values of
+     * the array {@link #squareToJson(int, int)} returns.
+     *
+     * @param out  The output to write to, positioned inside an array.
+     * @param row  The row of the square.
+     * @param col  The column of the square.
+     * @param lean Whether to leave the descriptions out.
+     */
+    public void writeSquareJson(JsonOutput out, int row, int col, boolean lean) {
+        if (visibleBits.get(index(row, col))) {
+            Square square = getSquare(row, col);
+            if (square.getAnimal() != null) {
+                square.getAnimal().writeJson(out, lean);
+            }
+            if (square.getCreature() != null) {
+                square.getCreature().writeJson(out, lean);
+            }
+        }
+    }
+
+    /**
+     * Looks up the position of an animal in the turn order by its name. Every game
+     * has the same animals in the same order, so this does not depend on the game.
+     *
+     * @param name The name of the animal.
+     * @return The index of the animal in {@link #getAnimals()}, or -1 if no animal
+     *         has that name.
+     */
+    public static int animalOrdinal(String name) {
+        return ANIMAL_ORDINALS.getOrDefault(name, -1);
+    }
+
+    /**
+     * Looks up the name of an animal by its position in the turn order.
+     *
+     * @param ordinal The index of the animal in {@link #getAnimals()}.
+     * @return The name of the animal, or null if there is no animal at that
+     *         position.
+     */
+    public static String animalName(int ordinal) {
+        return ordinal >= 0 && ordinal < ANIMAL_NAMES.length ? ANIMAL_NAMES[ordinal] : null;
+    }
+
+    /**
+     * Returns the number of animals every game has.
+     *
+     * @return The number of animals.
+     */
+    public static int animalCount() {
+        return ANIMAL_NAMES.length;
+    }
+
+    /**
+     * Looks up the kind of a creature: 0 for the unicorn, then the centaur, the
+     * dragon, the phoenix and the sphinx. The first five creatures of a game are
+     * one of each kind in this order, so for the original game this is also the
+     * position of the creature in {@link #getCreatures()}.
+     *
+     * @param creature A creature.
+     * @return The kind of the creature, or -1 if it is not a known kind.
+     */
+    public int creatureOrdinal(Creature creature) {
+        return CREATURE_KINDS.indexOf(creature.getClass());
+    }
+
+    /**
+     * Returns the number of rows on the board.
+     *
+     * @return The number of rows.
+     */
+    public int getRows() {
+        return ROW;
+    }
+
+    /**
+     * Returns the number of columns on the board.
+     *
+     * @return The number of columns.
+     */
+    public int getCols() {
+        return COL;
+    }
 }
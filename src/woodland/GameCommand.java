@@ -0,0 +1,227 @@
+package woodland;
+
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+import javax.json.Json;
+import javax.json.JsonException;
+import javax.json.JsonNumber;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+
+import woodland.Spells.Spell;
+
+/**
+ * An action a client asks to perform on a game, decoded once from the JSON body
+ * of the request. A move names the animal and the square it moves to:
+ * {"action": "move", "animal": "Fox", "toSquare": {"row": 3, "col": 4}}. A
+ * spell names the animal and the spell it casts:
+ * {"action": "spell", "animal": "Fox", "spell": "Heal"}. Names are resolved
+ * through lookup tables when the command is decoded, so applying it does not
+ * compare strings.
+ *
+ * Commands are immutable.
+ */
+public final class GameCommand {
+    /**
+     * The kinds of action a command can ask for.
+     */
+    public enum Type {
+        /**
+         * Moves an animal to another square.
+         */
+        MOVE,
+        /**
+         * Casts one of an animal's spells.
+         */
+        SPELL,
+        /**
+         * Any other action, which leaves the game as it is.
+         */
+        OTHER
+    }
+
+    private final Type type;
+    private final String animalName;
+    private final int animal;
+    private final int row;
+    private final int col;
+    private final String spellName;
+    private final Spell spell;
+
+    /**
+     * Constructs a command from its decoded parts.
+     *
+     * @param type       The kind of action.
+     * @param animalName The name of the animal as sent by the client.
+     * @param animal     The index of the animal in the turn order.
+     * @param row        The row moved to, or -1 if the command is not a move.
+     * @param col        The column moved to, or -1 if the command is not a move.
+     * @param spellName  The name of the spell as sent by the client, or null if
+     *                   the command is not a spell.
+     * @param spell      The spell cast, or null if the command is not a spell or
+     *                   names no known spell.
+     */
+    public GameCommand(Type type, String animalName, int animal, int row, int col, String spellName, Spell spell) {
+        this.type = type;
+        this.animalName = animalName;
+        this.animal = animal;
+        this.row = row;
+        this.col = col;
+        this.spellName = spellName;
+        this.spell = spell;
+    }
+
+    /**
+     * Decodes a command from the JSON body of a request.
+     *
+     * @param json The JSON text of the action.
+     * @return The decoded command.
+     * @throws JsonException If the text is not a JSON object, a field the action
+     *                       needs is missing or has the wrong type, or the animal
+     *                       is unknown.
+     */
+    public static GameCommand parse(String json) {
+        JsonObject jsonObject;
+        try (JsonReader jsonReader = Json.createReader(new StringReader(json))) {
+            jsonObject = jsonReader.readObject();
+        }
+
+        String action = string(jsonObject, "action");
+        String animalName = string(jsonObject, "animal");
+        Type type = action.equals("move") ? Type.MOVE : action.equals("spell") ? Type.SPELL : Type.OTHER;
+        int animal = Game.animalOrdinal(animalName);
+        if (animal < 0) {
+            throw new JsonException("Unknown animal: " + animalName);
+        }
+
+        if (type == Type.MOVE) {
+            JsonValue toSquare = jsonObject.get("toSquare");
+            if (!(toSquare instanceof JsonObject)) {
+                throw new JsonException("Missing toSquare");
+            }
+            return new GameCommand(type, animalName, animal, number((JsonObject) toSquare, "row"),
+                    number((JsonObject) toSquare, "col"), null, null);
+        } else if (type == Type.SPELL) {
+            String spellName = string(jsonObject, "spell");
+            return new GameCommand(type, animalName, animal, -1, -1, spellName, Spell.fromName(spellName));
+        }
+        return new GameCommand(type, animalName, animal, -1, -1, null, null);
+    }
+
+    /**
+     * Decodes a command from the raw bytes of a JSON body. Bodies in the common
+     * form are decoded in place by {@link ActionParser}; anything else is decoded
+     * by {@link #parse(String)}, so the result and the errors are the same.
+     *
+     * @param json The UTF-8 bytes of the action.
+     * @return The decoded command.
+     * @throws JsonException If the body is not a valid action, as for
+     *                       {@link #parse(String)}.
+     */
+    public static GameCommand parse(byte[] json) {
+        GameCommand command = ActionParser.parse(json);
+        if (command != null) {
+            return command;
+        }
+        return parse(new String(json, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Reads a string field that must be present.
+     *
+     * @param jsonObject The object holding the field.
+     * @param name       The name of the field.
+     * @return The value of the field.
+     * @throws JsonException If the field is missing or not a string.
+     */
+    private static String string(JsonObject jsonObject, String name) {
+        JsonValue value = jsonObject.get(name);
+        if (!(value instanceof JsonString)) {
+            throw new JsonException("Missing " + name);
+        }
+        return ((JsonString) value).getString();
+    }
+
+    /**
+     * Reads an integer field that must be present.
+     *
+     * @param jsonObject The object holding the field.
+     * @param name       The name of the field.
+     * @return The value of the field.
+     * @throws JsonException If the field is missing or not a number.
+     */
+    private static int number(JsonObject jsonObject, String name) {
+        JsonValue value = jsonObject.get(name);
+        if (!(value instanceof JsonNumber)) {
+            throw new JsonException("Missing " + name);
+        }
+        return ((JsonNumber) value).intValue();
+    }
+
+    /**
+     * Returns the kind of action.
+     *
+     * @return The type of the command.
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns the name of the animal as sent by the client.
+     *
+     * @return The animal's name.
+     */
+    public String getAnimalName() {
+        return animalName;
+    }
+
+    /**
+     * Returns the position of the animal in the turn order.
+     *
+     * @return The index of the animal in {@link Game#getAnimals()}.
+     */
+    public int getAnimal() {
+        return animal;
+    }
+
+    /**
+     * Returns the row the animal moves to.
+     *
+     * @return The row, or -1 if the command is not a move.
+     */
+    public int getRow() {
+        return row;
+    }
+
+    /**
+     * Returns the column the animal moves to.
+     *
+     * @return The column, or -1 if the command is not a move.
+     */
+    public int getCol() {
+        return col;
+    }
+
+    /**
+     * Returns the name of the spell as sent by the client.
+     *
+     * @return The spell's name, or null if the command is not a spell.
+     */
+    public String getSpellName() {
+        return spellName;
+    }
+
+    /**
+     * Returns the spell cast.
+     *
+     * @return The spell, or null if the command is not a spell or names no known
+     *         spell.
+     */
+    public Spell getSpell() {
+        return spell;
+    }
+}
@@ -0,0 +1,148 @@
+package woodland;
+
+/**
+ * The size of a game's board and how many creatures and spells are placed on
+ * it. The default is the original game: a 20 by 20 board with 5 creatures and
+ * 10 spells. Boards can be made as large as 2000 by 2000; only the squares
+ * that hold something or have been revealed are stored, so a large board costs
+ * memory in proportion to what is on it rather than to its area.
+ *
+ * The generator version says how the board is laid out from the seed. A seed
+ * gives the same board for as long as the same version is asked for, so a new
+ * way of laying out boards is added as a new version rather than by changing
+ * an old one.
+ *
+ * Configurations are immutable.
+ */
+public final class GameConfig {
+    /**
+     * The smallest number of rows or columns a board can have.
+     */
+    public static final int MIN_SIZE = 20;
+    /**
+     * The largest number of rows or columns a board can have.
+     */
+    public static final int MAX_SIZE = 2000;
+    /**
+     * Generator version 1, the original game's: everything is placed with
+     * draws from a {@link java.util.Random}, drawing again whenever the square
+     * drawn is taken. This is the default, so that every seed keeps the board
+     * it has always had.
+     */
+    public static final int GENERATOR_LEGACY = 1;
+    /**
+     * Generator version 2: the squares are dealt from a partial shuffle of the
+     * free squares with a {@link java.util.SplittableRandom}, so no draw is
+     * ever wasted on a taken square and a board filled up to the limit takes
+     * no longer per piece than an empty one.
+     */
+    public static final int GENERATOR_SHUFFLE = 2;
+    /**
+     * The original game: a 20 by 20 board with 5 creatures and 10 spells.
+     */
+    public static final GameConfig DEFAULT = new GameConfig(20, 20, 5, 10);
+
+    private final int rows;
+    private final int cols;
+    private final int creatures;
+    private final int spells;
+    private final int generator;
+
+    /**
+     * Creates a configuration laid out by the original generator,
+     * {@link #GENERATOR_LEGACY}.
+     *
+     * @param rows      The number of rows of the board.
+     * @param cols      The number of columns of the board.
+     * @param creatures The number of creatures placed on the board.
+     * @param spells    The number of spells placed on the board.
+     * @throws IllegalArgumentException If the board is smaller than
+     *                                  {@link #MIN_SIZE} or larger than
+     *                                  {@link #MAX_SIZE} either way, or if the
+     *                                  creatures and spells would fill more
+     *                                  than half of the squares they can be
+     *                                  placed on.
+     */
+    public GameConfig(int rows, int cols, int creatures, int spells) {
+        this(rows, cols, creatures, spells, GENERATOR_LEGACY);
+    }
+
+    /**
+     * Creates a configuration laid out by the given generator version.
+     *
+     * @param rows      The number of rows of the board.
+     * @param cols      The number of columns of the board.
+     * @param creatures The number of creatures placed on the board.
+     * @param spells    The number of spells placed on the board.
+     * @param generator The generator version, {@link #GENERATOR_LEGACY} or
+     *                  {@link #GENERATOR_SHUFFLE}.
+     * @throws IllegalArgumentException If the board is smaller than
+     *                                  {@link #MIN_SIZE} or larger than
+     *                                  {@link #MAX_SIZE} either way, if the
+     *                                  creatures and spells would fill more
+     *                                  than half of the squares they can be
+     *                                  placed on, or if there is no such
+     *                                  generator version.
+     */
+    public GameConfig(int rows, int cols, int creatures, int spells, int generator) {
+        if (rows < MIN_SIZE || rows > MAX_SIZE || cols < MIN_SIZE || cols > MAX_SIZE) {
+            throw new IllegalArgumentException("Board size must be from " + MIN_SIZE + " to " + MAX_SIZE);
+        }
+        if (creatures < 0 || spells < 0 || (long) creatures + spells > (long) (rows - 2) * cols / 2) {
+            throw new IllegalArgumentException("Too many creatures and spells for the board");
+        }
+        if (generator != GENERATOR_LEGACY && generator != GENERATOR_SHUFFLE) {
+            throw new IllegalArgumentException("Unknown generator version " + generator);
+        }
+        this.rows = rows;
+        this.cols = cols;
+        this.creatures = creatures;
+        this.spells = spells;
+        this.generator = generator;
+    }
+
+    /**
+     * Returns the number of rows of the board.
+     *
+     * @return The number of rows.
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Returns the number of columns of the board.
+     *
+     * @return The number of columns.
+     */
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Returns the number of creatures placed on the board.
+     *
+     * @return The number of creatures.
+     */
+    public int getCreatures() {
+        return creatures;
+    }
+
+    /**
+     * Returns the number of spells placed on the board.
+     *
+     * @return The number of spells.
+     */
+    public int getSpells() {
+        return spells;
+    }
+
+    /**
+     * Returns the version of the generator that lays out the board.
+     *
+     * @return {@link #GENERATOR_LEGACY} or {@link #GENERATOR_SHUFFLE}.
+     */
+    public int getGenerator() {
+        return generator;
+    }
+}
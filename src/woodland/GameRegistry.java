@@ -0,0 +1,149 @@
+package woodland;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds every game hosted by the server, keyed by id. Lookups, creation and
+ * removal are safe to call from any number of threads at once and take
+ * constant time, so the server can host thousands of independent matches.
+ * Games created on behalf of clients go through
+ * {@link #tryCreate(long, GameConfig, int)}, which keeps the number of games
+ * under a limit even when many are created at once.
+ */
+public class GameRegistry {
+    private final ConcurrentMap<String, GameSession> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final AtomicInteger count = new AtomicInteger();
+
+    /**
+     * Creates a new game under a newly allocated id.
+     *
+     * @param seed The seed used to generate the game.
+     * @return The session holding the new game.
+     */
+    public GameSession create(long seed) {
+        return create(seed, GameConfig.DEFAULT);
+    }
+
+    /**
+     * Creates a new game with the given configuration under a newly allocated
+     * id.
+     *
+     * @param seed   The seed used to generate the game.
+     * @param config The size of the board and the number of creatures and
+     *               spells.
+     * @return The session holding the new game.
+     */
+    public GameSession create(long seed, GameConfig config) {
+        return create(newId(), seed, config);
+    }
+
+    /**
+     * Creates a new game with the given configuration under a newly allocated
+     * id, unless the registry already holds as many games as it may. A place is
+     * taken before the game is built and given back if building it fails, so
+     * games created at the same time never take the registry past the limit.
+     *
+     * @param seed     The seed used to generate the game.
+     * @param config   The size of the board and the number of creatures and
+     *                 spells.
+     * @param maxGames The most games the registry may hold, counting the new
+     *                 one.
+     * @return The session holding the new game, or null if the registry is
+     *         full.
+     */
+    public GameSession tryCreate(long seed, GameConfig config, int maxGames) {
+        if (count.incrementAndGet() > maxGames) {
+            count.decrementAndGet();
+            return null;
+        }
+        try {
+            String id = newId();
+            GameSession session = new GameSession(id, seed, config);
+            sessions.put(id, session);
+            return session;
+        } catch (RuntimeException | Error e) {
+            count.decrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Allocates an id no game has.
+     *
+     * @return The new id.
+     */
+    private String newId() {
+        String id = Long.toString(nextId.getAndIncrement());
+        while (sessions.containsKey(id)) {
+            id = Long.toString(nextId.getAndIncrement());
+        }
+        return id;
+    }
+
+    /**
+     * Creates a new game under the given id, replacing any game that already
+     * had that id.
+     *
+     * @param id   The id clients use to address the game.
+     * @param seed The seed used to generate the game.
+     * @return The session holding the new game.
+     */
+    public GameSession create(String id, long seed) {
+        return create(id, seed, GameConfig.DEFAULT);
+    }
+
+    /**
+     * Creates a new game with the given configuration under the given id,
+     * replacing any game that already had that id.
+     *
+     * @param id     The id clients use to address the game.
+     * @param seed   The seed used to generate the game.
+     * @param config The size of the board and the number of creatures and
+     *               spells.
+     * @return The session holding the new game.
+     */
+    public GameSession create(String id, long seed, GameConfig config) {
+        GameSession session = new GameSession(id, seed, config);
+        if (sessions.put(id, session) == null) {
+            count.incrementAndGet();
+        }
+        return session;
+    }
+
+    /**
+     * Looks up a game by id.
+     *
+     * @param id The id of the game.
+     * @return The session holding the game, or null if there is no such game.
+     */
+    public GameSession get(String id) {
+        return sessions.get(id);
+    }
+
+    /**
+     * Removes a game from the registry.
+     *
+     * @param id The id of the game.
+     * @return The session that held the game, or null if there was no such game.
+     */
+    public GameSession remove(String id) {
+        GameSession session = sessions.remove(id);
+        if (session != null) {
+            count.decrementAndGet();
+        }
+        return session;
+    }
+
+    /**
+     * Returns the number of games currently hosted.
+     *
+     * @return The number of games.
+     */
+    public int size() {
+        return sessions.size();
+    }
+}
@@ -1,22 +1,39 @@
 package woodland;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.io.InputStream;
 import java.io.StringReader;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
 import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.Deflater;
 
 import javax.json.Json;
 import javax.json.JsonException;
+import javax.json.JsonNumber;
 import javax.json.JsonObject;
 import javax.json.JsonObjectBuilder;
 import javax.json.JsonReader;
+import javax.json.JsonValue;
+import javax.json.JsonWriter;
+import javax.json.JsonWriterFactory;
 
 import woodland.Animals.Animal;
-import woodland.Spells.Spell;
 
 /**
  * Represents a game server that allows communication with clients to interact
@@ -25,39 +42,67 @@ import woodland.Spells.Spell;
  * accordingly.
  */
 public class GameServer {
-    private Game game;
+    private final GameRegistry registry = new GameRegistry();
+    private final GameSession defaultSession;
+    private final GameShards shards = new GameShards(Runtime.getRuntime().availableProcessors());
     private long seed;
-    private String turnType = "move";
+    private final Queue<ResponseWriter> responseWriters = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idleResponseWriters = new AtomicInteger();
+    private final JsonWriterFactory jsonWriterFactory = Json.createWriterFactory(null);
     private int zero = 0;
     private int one = 1;
-    private int five = 5;
     private int twohundred = 200;
     private int fourhundred = 400;
+    private int fourhundredfour = 404;
+    private int fourhundredfive = 405;
+    private int fourhundredthirteen = 413;
+    private int fourhundredthirtyone = 431;
     private int fivehundred = 500;
+    private int fivehundredthree = 503;
+    private int thousand = 1000;
+    private int idleTimeout = 5000;
+    private int maxRequestsPerConnection = 100;
+    private int maxRequestSize = 1048576;
+    private int backlog = 1024;
+    private int responseCapacity = 65536;
+    private int maxIdleResponseWriters = 64;
+    private int heartbeatInterval = 15000;
+    private int webSocketIdleTimeout = 300000;
+    private int maxWebSocketMessage = 65536;
+    private int compressionThreshold = 1024;
+    private int maxGames = 1000;
+    private int maxPieces = 10000;
+    private final Compression compression = new Compression(Deflater.DEFAULT_COMPRESSION);
 
     /**
      * Initializes a game server with the specified port and seed for the game.
+     * The server starts out hosting a single game under the id "default", which
+     * is the game the /game and /reset routes act on; further games can be
+     * created through the /games routes.
      * 
      * @param port The port number the server listens on.
-     * @param seed The seed used to initialize the game.
+     * @param seed The seed used to initialize the default game and any game
+     *             created without a seed of its own.
      */
     public GameServer(int port, long seed) {
-        this.game = new Game(seed);
+        this.defaultSession = registry.create("default", seed);
         this.seed = seed;
     }
 
     /**
      * Starts a server to listen for incoming connections on the given port.
-     * For each connection, it processes the client's request as long as the game is
-     * not over.
+     * Each accepted connection is served on its own virtual thread, so a slow or
+     * stalled client never holds up the accept loop or any other player. The
+     * server keeps accepting as long as the default game is not over.
      * 
      * @param port The port number on which the server will listen for connections.
      */
     public void runServer(int port) {
-        try (ServerSocket ss = new ServerSocket(port)) {
-            while (!game.gameOver()) {
-                Socket conn = ss.accept();
-                clientRequest(conn);
+        try (ServerSocketChannel ss = ServerSocketChannel.open()) {
+            ss.bind(new InetSocketAddress(port), backlog);
+            while (!isGameOver()) {
+                SocketChannel conn = ss.accept();
+                Thread.ofVirtual().name("client-", conn.socket().getPort()).start(() -> clientRequest(conn));
             }
         } catch (IOException | IllegalArgumentException e) {
             e.printStackTrace();
@@ -65,280 +110,996 @@ public class GameServer {
     }
 
     /**
-     * Sets the type of turn that is currently active in the game.
-     * This method is presumably used to control the flow of the game based on the
-     * turn type.
-     * 
-     * @param string The description of the current turn type.
+     * Sets how long a kept-alive connection may stay idle between requests before
+     * the server closes it.
+     *
+     * @param idleTimeout The idle timeout in milliseconds.
      */
-    public void setTurnType(String string) {
-        this.turnType = string;
+    public void setIdleTimeout(int idleTimeout) {
+        this.idleTimeout = idleTimeout;
     }
 
     /**
-     * Parses a move action from a JSON string and performs the move if it's valid.
-     * The method verifies that the specified animal can make the move based on the
-     * game's current state.
-     * If the move is valid, the method updates the game state accordingly and may
-     * change the turn type to 'spell'.
+     * Sets how many requests a single connection may send before the server
+     * closes it.
+     *
+     * @param maxRequestsPerConnection The maximum number of requests per
+     *                                 connection.
+     */
+    public void setMaxRequestsPerConnection(int maxRequestsPerConnection) {
+        this.maxRequestsPerConnection = maxRequestsPerConnection;
+    }
+
+    /**
+     * Returns how long a kept-alive connection may stay idle between requests.
+     *
+     * @return The idle timeout in milliseconds.
+     */
+    public int getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    /**
+     * Sets the smallest response body the server compresses for clients that
+     * accept gzip or deflate. Smaller bodies are sent as they are, since
+     * compressing them saves too little to be worth the time.
      *
-     * @param jsonString  The JSON string representing the move action to be parsed.
-     * @param animalIndex The index of the animal that is supposed to move.
-     * @return true if the move was successfully parsed and executed; false
-     *         otherwise.
+     * @param compressionThreshold The threshold in bytes.
      */
-    public boolean parseMoveAction(String jsonString, int animalIndex) {
-        try (JsonReader jsonReader = Json.createReader(new StringReader(jsonString))) {
-            JsonObject jsonObject = jsonReader.readObject();
+    public void setCompressionThreshold(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
 
-            JsonObject toSquare = jsonObject.getJsonObject("toSquare");
-            int row = toSquare.getInt("row");
-            int col = toSquare.getInt("col");
+    /**
+     * Sets the most games the server hosts at once, counting the default game.
+     * Once that many are hosted, POST /games is answered with 503 until a game
+     * is deleted.
+     *
+     * @param maxGames The maximum number of live games.
+     */
+    public void setMaxGames(int maxGames) {
+        this.maxGames = maxGames;
+    }
 
-            String action = jsonObject.getString("action");
+    /**
+     * Sets the most creatures and spells, together, a game created through
+     * POST /games may have, whatever the size of its board. Creating a game
+     * costs memory and time in proportion to what is placed on it, so this
+     * bounds what a single request can make the server build.
+     *
+     * @param maxPieces The maximum number of creatures and spells per game.
+     */
+    public void setMaxPieces(int maxPieces) {
+        this.maxPieces = maxPieces;
+    }
 
-            Animal specAnimal = game.getAnimals().get(animalIndex);
-            Square currentSquare = specAnimal.getSquare();
-            int currrentRow = currentSquare.getRow();
-            int currentCol = currentSquare.getCol();
+    /**
+     * Returns the most bytes a request, head and body together, may take on
+     * either transport. A larger request is answered with 431 or 413 and its
+     * connection is closed.
+     *
+     * @return The maximum request size in bytes.
+     */
+    public int getMaxRequestSize() {
+        return maxRequestSize;
+    }
 
-            String currentAnimal = this.game.getCurrentAnimalName();
+    /**
+     * Returns how many requests a single connection may send before it is closed.
+     *
+     * @return The maximum number of requests per connection.
+     */
+    public int getMaxRequestsPerConnection() {
+        return maxRequestsPerConnection;
+    }
 
-            if (specAnimal.getName().equals(currentAnimal) && turnType.equals("move")
-                    && specAnimal.move(currrentRow, currentCol, row, col)) {
-                game.setStatus("The last move was successful.");
-                game.thisTurn = true;
-                if (action.equals("move")) {
-                    setTurnType("spell");
-                }
-                return true;
-            } else if (specAnimal.getName()
-                    .equals(game.getAnimals().get((game.currentAnimalIndex + one) % five).getName())
-                    && specAnimal.move(currrentRow, currentCol, row, col)) {
-                specAnimal.move(currrentRow, currentCol, row, col);
-                game.setStatus("The last move was successful.");
-                game.nextTurn = true;
-                this.game.attackAnimal();
-                game.updateCurrentAnimalIndex();
-                if (action.equals("move")) {
-                    setTurnType("spell");
-                }
-                return true;
-            } else if (!specAnimal.getName().equals(currentAnimal)
-                    || !currentAnimal
-                            .equals(game.getAnimals().get((game.currentAnimalIndex + one) % five).getName().trim())) {
-                game.setStatus("The last move was invalid.");
-                return false;
-            } else if (!specAnimal.move(currrentRow, currentCol, row, col)) {
-                game.setStatus("The last move was invalid.");
-                return false;
-            } else {
-                game.setStatus("The last move was invalid.");
-                return false;
-            }
-        }
+    /**
+     * Returns how many connections may wait to be accepted before the operating
+     * system starts refusing new ones.
+     *
+     * @return The listen backlog.
+     */
+    public int getBacklog() {
+        return backlog;
+    }
+
+    /**
+     * Returns how long a stream of events may stay silent before a comment is
+     * sent on it to check the client is still there.
+     *
+     * @return The heartbeat interval in milliseconds.
+     */
+    public int getHeartbeatInterval() {
+        return heartbeatInterval;
+    }
+
+    /**
+     * Checks whether the default game hosted by this server is over.
+     *
+     * @return true if the game is over, false otherwise.
+     */
+    public boolean isGameOver() {
+        return defaultSession.getGame().gameOver();
+    }
+
+    /**
+     * Returns the registry of every game hosted by this server.
+     *
+     * @return The game registry.
+     */
+    public GameRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Performs a move command if it's valid.
+     * The method verifies that the specified animal can make the move based on the
+     * game's current state.
+     * If the move is valid, the method updates the game state accordingly and may
+     * change the turn type to 'spell'.
+     *
+     * @param game    The game the move is made in.
+     * @param command The decoded move command.
+     * @return true if the move was successfully executed; false otherwise.
+     */
+    public boolean parseMoveAction(Game game, GameCommand command) {
+        return game.playMove(command);
     }
 
     /**
-     * Parses a spell action from the provided JSON string and executes the spell if
-     * the action is valid.
+     * Executes a spell command if it is valid.
      * The method checks if the specified animal can cast the spell and updates the
      * game state based on the result.
      * If a spell action is performed, the turn type is set to 'move', indicating
      * the next action should be a move.
      *
-     * @param jsonString  The JSON string containing the spell action details.
-     * @param animalIndex The index of the animal that is casting the spell.
-     * @return true if the spell action was successfully parsed and executed; false
-     *         otherwise.
+     * @param game    The game the spell is cast in.
+     * @param command The decoded spell command.
+     * @return true if the spell action was successfully executed; false otherwise.
+     */
+    public boolean parseSpellAction(Game game, GameCommand command) {
+        return game.playSpell(command);
+    }
+
+    /**
+     * Handles client requests received through the specified connection. The
+     * connection is kept open so the client can send several requests over it;
+     * pipelined requests are answered in the order they were sent, each response
+     * with a single gathering write. The connection is closed when the client
+     * asks for it, when it has been idle for longer than the idle timeout, when
+     * it has served the maximum number of requests, or when a request fails.
+     *
+     * @param clientChannel The blocking channel connected to the client.
      */
-    public boolean parseSpellAction(String jsonString, int animalIndex) {
-        try (JsonReader jsonReader = Json.createReader(new StringReader(jsonString))) {
-            JsonObject jsonObject = jsonReader.readObject();
+    public void clientRequest(SocketChannel clientChannel) {
+        ResponseWriter out = acquireResponseWriter();
+        try {
+            clientChannel.socket().setSoTimeout(idleTimeout);
+            InputStream in = new BufferedInputStream(clientChannel.socket().getInputStream());
 
-            String action = jsonObject.getString("action");
-            String spell = jsonObject.getString("spell");
-            if (action.equals("spell")) {
-                setTurnType("move");
+            for (int served = one; served <= maxRequestsPerConnection; served++) {
+                HttpRequest request = HttpRequest.read(in, maxRequestSize);
+                if (request == null) {
+                    break;
+                }
+                GameSession events = eventSession(request);
+                if (events != null) {
+                    streamEvents(events, clientChannel, out);
+                    break;
+                }
+                GameSession played = webSocketSession(request);
+                if (played != null) {
+                    serveWebSocket(played, request, in, clientChannel, out);
+                    break;
+                }
+                boolean keepAlive = request.isKeepAlive() && served < maxRequestsPerConnection;
+                out.reset();
+                handleRequest(request, out);
+                out.send(clientChannel, keepAlive);
+                if (!keepAlive) {
+                    break;
+                }
             }
 
-            Animal specAnimal = game.getAnimals().get(animalIndex);
-            String currentAnimal = jsonObject.getString("animal");
-            if (!specAnimal.getName().equals(currentAnimal)) {
-                game.setStatus("The last move was invalid.");
-                return false;
+        } catch (SocketTimeoutException e) {
+            // the connection was idle for too long, so it is simply closed
+        } catch (Exception e) {
+            out.reset();
+            sendFailure(out, e);
+            try {
+                out.send(clientChannel, false);
+            } catch (IOException sendFailed) {
+                System.err.println("Socket error: " + sendFailed.getMessage());
+            }
+        } finally {
+            releaseResponseWriter(out);
+            try {
+                clientChannel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
             }
+        }
+    }
+
+    /**
+     * Streams the state of a session's game to the client as Server-Sent Events
+     * until the client disconnects or the game is removed. A new state is sent
+     * only when the game changes; if the client reads slower than the game
+     * changes, the states in between are skipped. A comment is sent when nothing
+     * has been sent for a while, so a client that went away is noticed.
+     *
+     * @param session The session whose game is streamed.
+     * @param channel The blocking channel connected to the client.
+     * @param out     The response writer the head of the stream is built in.
+     * @throws IOException If writing to the client fails.
+     */
+    private void streamEvents(GameSession session, SocketChannel channel, ResponseWriter out) throws IOException {
+        out.reset();
+        out.setContentType("text/event-stream");
+        ByteBuffer[] head = out.finishStream();
+        while (head[2].hasRemaining()) {
+            channel.write(head);
+        }
 
-            for (Spell spellObject : specAnimal.getSpells().keySet()) {
-                if (spellObject.getName().equals(spell)) {
-                    this.game.castSpell(specAnimal, spellObject);
-                    game.setStatus("The last spell was successful.");
-                    game.currentAnimalUsedSpell = false;
-                    game.nextAnimalUsedSpell = false;
-                    this.game.attackAnimal();
+        BlockingSubscriber subscriber = new BlockingSubscriber(Thread.currentThread());
+        subscribe(session, subscriber);
+        try {
+            long lastSent = System.currentTimeMillis();
+            while (!subscriber.ended) {
+                byte[] event = subscriber.latest.getAndSet(null);
+                if (event != null) {
+                    ByteBuffer buffer = ByteBuffer.wrap(event);
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    lastSent = System.currentTimeMillis();
+                } else if (System.currentTimeMillis() - lastSent >= heartbeatInterval) {
+                    ByteBuffer buffer = ByteBuffer.wrap(EventStream.HEARTBEAT);
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    lastSent = System.currentTimeMillis();
                 } else {
-                    this.game.attackAnimal();
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(heartbeatInterval));
                 }
             }
-            return true;
+        } finally {
+            session.getEvents().unsubscribe(subscriber);
+        }
+    }
+
+    /**
+     * A subscriber served by a connection's own thread, which sleeps until it is
+     * offered an event.
+     */
+    private static class BlockingSubscriber implements EventStream.Subscriber {
+        private AtomicReference<byte[]> latest = new AtomicReference<>();
+        private volatile boolean ended;
+        private Thread thread;
+
+        /**
+         * Creates a subscriber that wakes the given thread when it has something
+         * to send.
+         *
+         * @param thread The thread sending the events.
+         */
+        BlockingSubscriber(Thread thread) {
+            this.thread = thread;
+        }
+
+        @Override
+        public void offer(byte[] event) {
+            latest.set(event);
+            LockSupport.unpark(thread);
+        }
+
+        @Override
+        public void end() {
+            ended = true;
+            LockSupport.unpark(thread);
         }
     }
 
     /**
-     * Handles client requests received through the specified socket. It processes
-     * different HTTP request
-     * types such as GET, POST, and OPTIONS, and performs actions accordingly. It
-     * handles actions like
-     * fetching the game state, updating the game state with move and spell actions,
-     * and resetting the game.
+     * Returns the session whose events a request subscribes to, if it is a
+     * request for GET /game/events or GET /games/{id}/events of an existing game.
      *
-     * @param clientSocket The socket connected to the client.
+     * @param request The request.
+     * @return The session to stream, or null if the request is not a subscription.
      */
-    public void clientRequest(Socket clientSocket) {
-        PrintWriter out = null;
-        try {
-            InputStreamReader isr = new InputStreamReader(clientSocket.getInputStream());
-            BufferedReader in = new BufferedReader(isr);
-            out = new PrintWriter(clientSocket.getOutputStream(), true);
+    GameSession eventSession(HttpRequest request) {
+        if (!request.getMethod().equals("GET")) {
+            return null;
+        }
+        return sessionOf(request.getPath(), "/events");
+    }
 
-            String line = in.readLine();
-            int contentLength = zero;
-            String body = "";
+    /**
+     * Returns the session a WebSocket handshake is addressed to, if it is a
+     * handshake for /game/ws or /games/{id}/ws of an existing game.
+     *
+     * @param request The request.
+     * @return The session to play over the WebSocket, or null if the request is
+     *         not such a handshake.
+     */
+    GameSession webSocketSession(HttpRequest request) {
+        if (!WebSocket.isUpgrade(request)) {
+            return null;
+        }
+        return sessionOf(request.getPath(), "/ws");
+    }
 
-            if (line == "" || line == null) {
-                return;
-            }
-            String[] first_line = line.split(" ");
-
-            // read header
-            while (!line.isEmpty()) {
-                if (line.startsWith("Content-Length: ")) {
-                    contentLength = Integer.parseInt(line.substring("Content-Length: ".length()));
-                } else if (line.isEmpty()) {
-                    contentLength = zero;
-                    break;
-                }
-                line = in.readLine();
+    /**
+     * Returns the session addressed by a path to one of a game's sub-resources,
+     * /game{suffix} for the default game or /games/{id}{suffix} for any other.
+     *
+     * @param path   The request path.
+     * @param suffix The sub-resource, for example /events.
+     * @return The session, or null if the path does not address the sub-resource
+     *         of an existing game.
+     */
+    private GameSession sessionOf(String path, String suffix) {
+        if (!path.endsWith(suffix)) {
+            return null;
+        }
+        if (path.equals("/game" + suffix)) {
+            return defaultSession;
+        }
+        if (path.startsWith("/games/")) {
+            String id = path.substring("/games/".length(), path.length() - suffix.length());
+            if (id.indexOf('/') < zero) {
+                return registry.get(id);
             }
+        }
+        return null;
+    }
 
-            if (contentLength > -1) {
-                char[] bodyChars = new char[contentLength];
-                in.read(bodyChars, zero, contentLength);
-                body = new String(bodyChars);
-            }
+    /**
+     * Plays a session's game over a WebSocket. After the handshake, every text
+     * message the client sends is an action in the same JSON form as the body of
+     * POST /game, and is applied the same way. Each action is answered with a
+     * text message holding what POST /game would have answered: the new state,
+     * or an error. This returns when the client closes the WebSocket.
+     *
+     * @param session The session whose game is played.
+     * @param request The handshake request.
+     * @param in      The stream connected to the client, positioned after the
+     *                handshake request.
+     * @param channel The blocking channel connected to the client.
+     * @param out     The response writer the answers are built in.
+     * @throws IOException If reading from or writing to the client fails.
+     */
+    void serveWebSocket(GameSession session, HttpRequest request, InputStream in, SocketChannel channel,
+            ResponseWriter out) throws IOException {
+        ByteBuffer handshake = ByteBuffer.wrap(WebSocket.handshake(request));
+        while (handshake.hasRemaining()) {
+            channel.write(handshake);
+        }
+        channel.socket().setSoTimeout(webSocketIdleTimeout);
 
-            if (first_line[zero].equals("OPTIONS")) {
-                String headers = stringHeaders(out, twohundred, zero);
-                out.print(headers);
-                return;
+        WebSocket webSocket = new WebSocket(in, channel, maxWebSocketMessage);
+        Map<String, String> headers = Map.of();
+        String message = webSocket.read();
+        while (message != null) {
+            HttpRequest action = new HttpRequest("POST", request.getTarget(), "HTTP/1.1", headers, message);
+            out.reset();
+            try {
+                handleGameRequest(session, "POST", "/action", action, out);
+            } catch (IOException | RuntimeException e) {
+                out.reset();
+                sendFailure(out, e);
+            }
+            webSocket.sendText(out.finishBody());
+            message = webSocket.read();
+        }
+    }
 
-            } else if (first_line[zero].equals("GET")) {
-                if (first_line[one].equals("/")) {
-                    String responseBody = "{\"status\": \"ok\"}";
-                    String headers = stringHeaders(out, twohundred, responseBody.length());
-                    out.print(headers + responseBody);
+    /**
+     * Takes over a connection the non-blocking transport has upgraded to a
+     * WebSocket and plays the game over it on the calling thread, closing the
+     * connection at the end.
+     *
+     * @param session The session whose game is played.
+     * @param request The handshake request.
+     * @param in      The stream connected to the client, positioned after the
+     *                handshake request.
+     * @param channel The channel connected to the client, in blocking mode.
+     */
+    void upgradeToWebSocket(GameSession session, HttpRequest request, InputStream in, SocketChannel channel) {
+        ResponseWriter out = acquireResponseWriter();
+        try {
+            serveWebSocket(session, request, in, channel, out);
+        } catch (IOException e) {
+            // the client went away or stayed silent too long, so it is simply closed
+        } finally {
+            releaseResponseWriter(out);
+            try {
+                channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
 
-                } else if (first_line[one].equals("/game") || first_line[one].equals("/game/debug")) {
-                    String responseBody = getGameStateAsJson().toString();
-                    String headers = stringHeaders(out, twohundred, responseBody.length());
-                    out.print(headers + responseBody);
+    /**
+     * Subscribes a client to the events of a session's game. The client is
+     * offered the current state straight away.
+     *
+     * @param session    The session whose game the client watches.
+     * @param subscriber The client.
+     */
+    void subscribe(GameSession session, EventStream.Subscriber subscriber) {
+        Lock lock = session.getLock().readLock();
+        lock.lock();
+        try {
+            session.getEvents().subscribe(subscriber, session.getGame().getVersion(), getGameStateBytes(session));
+        } finally {
+            lock.unlock();
+        }
+    }
 
-                }
+    /**
+     * Takes a response writer from the pool of idle writers, creating a new one
+     * if none is idle. Writers hold direct buffers, so they are reused rather than
+     * created per connection.
+     *
+     * @return A response writer for the caller's exclusive use.
+     */
+    ResponseWriter acquireResponseWriter() {
+        ResponseWriter writer = responseWriters.poll();
+        if (writer != null) {
+            idleResponseWriters.decrementAndGet();
+        } else {
+            writer = new ResponseWriter("Keep-Alive: timeout=" + idleTimeout / thousand + ", max="
+                    + maxRequestsPerConnection + "\r\n", responseCapacity);
+        }
+        return writer;
+    }
 
-            } else if (first_line[zero].equals("POST")) {
-                if (first_line[one].equals("/game")) {
-                    try (JsonReader jsonReader = Json.createReader(new StringReader(body))) {
-                        JsonObject jsonObject = jsonReader.readObject();
-                        String actionType = jsonObject.getString("action");
-                        int animalIndex = getAnimalIndex(body);
-
-                        if (actionType.equals("move")) {
-                            boolean parseMove = parseMoveAction(body, animalIndex);
-                            if (!parseMove) {
-                                String responseBody = getGameStateAsJson().toString();
-                                String headers = stringHeaders(out, twohundred, responseBody.length());
-                                out.print(headers + responseBody);
-                                out.flush();
-                                return;
-                            } else if (parseMove) {
-                                String responseBody = getGameStateAsJson().toString();
-                                String headers = stringHeaders(out, twohundred, responseBody.length());
-                                out.print(headers + responseBody);
-                                out.flush();
-                            }
-
-                        } else if (actionType.equals("spell")) {
-                            parseSpellAction(body, animalIndex);
-                            String responseBody = getGameStateAsJson().toString();
-                            String headers = stringHeaders(out, twohundred, responseBody.length());
-                            out.print(headers + responseBody);
-                            out.flush();
-                        }
-                    }
-                } else if (first_line[one].equals("/reset")) {
-                    this.game = new Game(seed);
-                    turnType = "move";
-                    String responseBody = getGameStateAsJson().toString();
-                    String headers = stringHeaders(out, twohundred, responseBody.length());
-                    out.print(headers + responseBody);
-                    out.flush();
-                }
-            }
-            out.flush();
+    /**
+     * Returns a response writer to the pool of idle writers. A writer whose body
+     * buffer grew past the usual response capacity to fit a large response, or
+     * one that would take the pool past its size limit, is dropped instead, so
+     * a burst of large or concurrent responses does not keep its direct memory
+     * for the life of the server.
+     *
+     * @param writer The writer, which the caller must no longer use.
+     */
+    void releaseResponseWriter(ResponseWriter writer) {
+        if (writer.getBodyCapacity() > responseCapacity) {
+            return;
+        }
+        if (idleResponseWriters.incrementAndGet() > maxIdleResponseWriters) {
+            idleResponseWriters.decrementAndGet();
+            return;
+        }
+        responseWriters.add(writer);
+    }
 
-        } catch (SocketException e) {
+    /**
+     * Reports a request that failed with an exception to the client. A request
+     * that is too large is answered with a 431 or 413 status, other malformed
+     * requests with a 400 status and anything else with a 500 status.
+     *
+     * @param out The response writer the error response is written to.
+     * @param e   The exception the request failed with.
+     */
+    void sendFailure(ResponseWriter out, Exception e) {
+        if (e instanceof SocketException) {
             System.err.println("Socket error: " + e.getMessage());
             sendError(out, fourhundred, "Socket error");
-        } catch (JsonException e) {
+        } else if (e instanceof JsonException) {
             System.err.println("JSON parsing error: " + e.getMessage());
             sendError(out, fourhundred, "JSON parsing error");
-        } catch (NumberFormatException e) {
+        } else if (e instanceof RequestTooLargeException) {
+            System.err.println("Request too large: " + e.getMessage());
+            if (((RequestTooLargeException) e).isHead()) {
+                sendError(out, fourhundredthirtyone, "Request header fields too large");
+            } else {
+                sendError(out, fourhundredthirteen, "Request body too large");
+            }
+        } else if (e instanceof NumberFormatException) {
             System.err.println("Error parsing Content-Length header: " + e.getMessage());
             sendError(out, fourhundred, "Error parsing Content-Length");
-        } catch (ArrayIndexOutOfBoundsException e) {
+        } else if (e instanceof IllegalArgumentException) {
+            System.err.println("Malformed request: " + e.getMessage());
+            sendError(out, fourhundred, "Malformed request");
+        } else if (e instanceof ArrayIndexOutOfBoundsException) {
             System.err.println("Unexpected request format: " + e.getMessage());
             sendError(out, fourhundred, "Unexpected request format");
-        } catch (IOException e) {
+        } else if (e instanceof IOException) {
             e.printStackTrace();
             sendError(out, fivehundred, "Internal Server Error");
-        } catch (Exception e) {
+        } else {
             System.err.println("General exception: " + e.getMessage());
             e.printStackTrace();
             sendError(out, fivehundred, "Internal Server Error");
-        } finally {
+        }
+    }
+
+    /**
+     * Checks whether a request is answered without touching any game, so it
+     * never waits for a lock or a shard and costs next to nothing to handle:
+     * OPTIONS, the health check at / and paths that lead to no route.
+     *
+     * @param request The request.
+     * @return true if the request needs no game, false otherwise.
+     */
+    boolean isTrivial(HttpRequest request) {
+        String path = request.getPath();
+        return request.getMethod().equals("OPTIONS") || path.equals("/")
+                || !(path.equals("/game") || path.equals("/game/debug") || path.equals("/reset")
+                        || path.equals("/game/moves") || path.equals("/games") || path.startsWith("/games/"));
+    }
+
+    /**
+     * Handles a single request. It processes different HTTP request types such as
+     * GET, POST, DELETE and OPTIONS, and performs actions accordingly. Games are
+     * addressed as /games/{id}: POST /games creates a game, GET /games/{id}
+     * fetches its state, POST /games/{id}/action makes a move or casts a spell,
+     * POST /games/{id}/reset resets it and DELETE /games/{id} removes it. The
+     * original /game and /reset routes act on the default game. Responses at
+     * least as large as the compression threshold are compressed when the
+     * client accepts gzip or deflate.
+     *
+     * @param request The request to handle.
+     * @param out     The response writer the response is written to.
+     * @throws IOException If the response cannot be written.
+     */
+    void handleRequest(HttpRequest request, ResponseWriter out) throws IOException {
+        String method = request.getMethod();
+        String path = request.getPath();
+
+        if (method.equals("OPTIONS")) {
+            out.setStatus(twohundred);
+
+        } else if (path.equals("/")) {
+            if (method.equals("GET")) {
+                out.body().write("{\"status\": \"ok\"}");
+            } else {
+                sendError(out, fourhundredfive, "Method not allowed");
+            }
+
+        } else if (path.equals("/game") || path.equals("/game/debug")) {
+            handleGameRequest(defaultSession, method, method.equals("POST") ? "/action" : "", request, out);
+
+        } else if (path.equals("/reset")) {
+            handleGameRequest(defaultSession, method, "/reset", request, out);
+
+        } else if (path.equals("/game/moves")) {
+            handleGameRequest(defaultSession, method, "/moves", request, out);
+
+        } else if (path.equals("/games")) {
+            if (method.equals("POST")) {
+                createGame(request, out);
+            } else {
+                sendError(out, fourhundredfive, "Method not allowed");
+            }
+
+        } else if (path.startsWith("/games/")) {
+            String route = path.substring("/games/".length());
+            int slash = route.indexOf('/');
+            String id = slash < zero ? route : route.substring(zero, slash);
+            GameSession session = registry.get(id);
+            if (session == null) {
+                sendError(out, fourhundredfour, "Game not found");
+            } else {
+                handleGameRequest(session, method, slash < zero ? "" : route.substring(slash), request, out);
+            }
+
+        } else {
+            sendError(out, fourhundredfour, "Not found");
+        }
+
+        if (out.getContentEncoding() == null && out.getContentLength() >= compressionThreshold) {
+            int encoding = Compression.negotiate(request);
+            if (encoding != Compression.IDENTITY) {
+                out.compressBody(compression, encoding);
+            }
+        }
+    }
+
+    /**
+     * Handles a request addressed to a single game. Requests that only read the
+     * game share its read lock and run concurrently on the calling thread; a
+     * request for the full state in JSON takes no lock at all and is answered
+     * from the session's published snapshot.
+     * Requests that change the game are handed to the game's shard, which applies
+     * them one at a time in arrival order.
+     *
+     * @param session The session holding the game.
+     * @param method  The request method.
+     * @param route   The part of the path after the game id, for example /action,
+     *                or an empty string for the game itself.
+     * @param request The request to handle.
+     * @param out     The response writer the response is written to.
+     * @throws IOException If the response cannot be written.
+     */
+    private void handleGameRequest(GameSession session, String method, String route, HttpRequest request,
+            ResponseWriter out) throws IOException {
+        if (method.equals("GET") && route.equals("")) {
+            String since = request.getQueryParameter("since");
+            long sinceVersion;
+            try {
+                sinceVersion = since == null ? -one : Long.parseLong(since);
+            } catch (NumberFormatException e) {
+                sendError(out, fourhundred, "Invalid since version");
+                return;
+            }
+            if (since == null && !BinaryProtocol.accepts(request)) {
+                writeGameState(session, request, out);
+                return;
+            }
+            Lock lock = session.getLock().readLock();
+            lock.lock();
             try {
-                if (out != null) {
-                    out.close();
+                if (since == null || BinaryProtocol.accepts(request)) {
+                    writeGameState(session, request, out);
+                } else {
+                    writeGameDelta(session, sinceVersion, request, out);
                 }
-                clientSocket.close();
-            } catch (IOException e) {
-                e.printStackTrace();
+            } finally {
+                lock.unlock();
             }
+
+        } else if (method.equals("GET") && route.equals("/moves")) {
+            Lock lock = session.getLock().readLock();
+            lock.lock();
+            try {
+                writeLegalMoves(session, request, out);
+            } finally {
+                lock.unlock();
+            }
+
+        } else if ((method.equals("POST") && (route.equals("/action") || route.equals("/reset")))
+                || (method.equals("DELETE") && route.equals("") && session != defaultSession)) {
+            shards.apply(session, () -> {
+                Lock lock = session.getLock().writeLock();
+                lock.lock();
+                try {
+                    changeGame(session, route, request, out);
+                    if (method.equals("DELETE")) {
+                        session.getEvents().close();
+                    } else if (session.getEvents().size() > zero) {
+                        session.getEvents().publish(session.getGame().getVersion(), getGameStateBytes(session));
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                return null;
+            });
+
+        } else if (route.equals("") || route.equals("/action") || route.equals("/reset") || route.equals("/moves")) {
+            sendError(out, fourhundredfive, "Method not allowed");
+
+        } else {
+            sendError(out, fourhundredfour, "Not found");
         }
     }
 
     /**
-     * Determines the index of the animal from the JSON string provided. The
-     * animal's index is
-     * essential for processing game actions related to that specific animal.
+     * Applies a request that changes a game: an action, a reset or a removal. This
+     * runs on the game's shard with the game's write lock held. An action given
+     * the query parameter since is answered with what changed since that version,
+     * as a GET is, which keeps responses small on large boards.
      *
-     * @param JSONString The JSON string that contains the animal information.
-     * @return The index of the animal if found; -1 if the animal does not exist.
+     * @param session The session holding the game.
+     * @param route   The part of the path after the game id.
+     * @param request The request to apply.
+     * @param out     The response writer the response is written to.
+     * @throws IOException If the response cannot be written.
      */
-    public int getAnimalIndex(String JSONString) {
-        try (JsonReader jsonReader = Json.createReader(new StringReader(JSONString))) {
-            JsonObject jsonObject = jsonReader.readObject();
+    private void changeGame(GameSession session, String route, HttpRequest request, ResponseWriter out)
+            throws IOException {
+        if (route.equals("/action")) {
+            String since = request.getQueryParameter("since");
+            boolean delta = since != null && !BinaryProtocol.accepts(request);
+            long sinceVersion = -one;
+            if (delta) {
+                try {
+                    sinceVersion = Long.parseLong(since);
+                } catch (NumberFormatException e) {
+                    sendError(out, fourhundred, "Invalid since version");
+                    return;
+                }
+            }
+            Game game = session.getGame();
+            GameCommand command = BinaryProtocol.isBinary(request)
+                    ? BinaryProtocol.decodeCommand(request.getBodyBytes())
+                    : GameCommand.parse(request.getBodyBytes());
+            try {
+                game.play(command);
+            } finally {
+                session.publish();
+            }
+            if (delta) {
+                writeGameDelta(session, sinceVersion, request, out);
+            } else {
+                writeGameState(session, request, out);
+            }
 
-            String animal = jsonObject.getString("animal");
+        } else if (route.equals("/reset")) {
+            session.reset();
+            writeGameState(session, request, out);
 
-            for (int i = zero; i < five; i++) {
-                Animal specAnimal = game.animals.get(i);
-                if (specAnimal.getName().equals(animal)) {
-                    return i;
+        } else {
+            registry.remove(session.getId());
+            out.body().write("{\"id\":\"" + session.getId() + "\",\"deleted\":true}");
+        }
+    }
+
+    /**
+     * Creates a new game and responds with its id. The request body may give the
+     * seed as {"seed": n}; without one the game uses the server's seed. It may
+     * also give the size of the board and how many creatures and spells are
+     * placed on it as "rows", "cols", "creatures" and "spells", and the version
+     * of the board generator as "generator"; anything left out is taken from
+     * the original 20 by 20 game, whose generator places the same seed's board
+     * as earlier versions did. A seed or any of the other fields given that is
+     * not a whole number is answered with 400, as is a game with more creatures
+     * and spells than the server allows, and a request made while the server
+     * hosts as many games as it may is answered with 503.
+     *
+     * @param request The request creating the game.
+     * @param out     The response writer the response is written to.
+     */
+    private void createGame(HttpRequest request, ResponseWriter out) {
+        long gameSeed = seed;
+        GameConfig config = GameConfig.DEFAULT;
+        if (!request.getBody().isBlank()) {
+            try (JsonReader jsonReader = Json.createReader(new StringReader(request.getBody()))) {
+                JsonObject jsonObject = jsonReader.readObject();
+                if (jsonObject.containsKey("seed")) {
+                    JsonValue seedValue = jsonObject.get("seed");
+                    if (!(seedValue instanceof JsonNumber) || !((JsonNumber) seedValue).isIntegral()) {
+                        sendError(out, fourhundred, "Seed must be a whole number");
+                        return;
+                    }
+                    gameSeed = ((JsonNumber) seedValue).longValue();
+                }
+                try {
+                    int creatures = intField(jsonObject, "creatures", config.getCreatures());
+                    int spells = intField(jsonObject, "spells", config.getSpells());
+                    if ((long) creatures + spells > maxPieces) {
+                        throw new IllegalArgumentException("At most " + maxPieces + " creatures and spells");
+                    }
+                    config = new GameConfig(intField(jsonObject, "rows", config.getRows()),
+                            intField(jsonObject, "cols", config.getCols()),
+                            creatures,
+                            spells,
+                            intField(jsonObject, "generator", config.getGenerator()));
+                } catch (IllegalArgumentException e) {
+                    sendError(out, fourhundred, e.getMessage());
+                    return;
+                }
+            }
+        }
+        GameSession session = registry.tryCreate(gameSeed, config, maxGames);
+        if (session == null) {
+            sendError(out, fivehundredthree, "Too many games");
+            return;
+        }
+        JsonObject created = Json.createObjectBuilder()
+                .add("id", session.getId())
+                .add("seed", session.getSeed())
+                .add("rows", config.getRows())
+                .add("cols", config.getCols())
+                .add("creatures", config.getCreatures())
+                .add("spells", config.getSpells())
+                .add("generator", config.getGenerator())
+                .build();
+        try (JsonWriter jsonWriter = jsonWriterFactory.createWriter(out.body())) {
+            jsonWriter.writeObject(created);
+        }
+    }
+
+    /**
+     * Reads a whole number field of a request body.
+     *
+     * @param jsonObject   The request body.
+     * @param name         The name of the field.
+     * @param defaultValue The value if the field is left out.
+     * @return The value of the field, or the default value.
+     * @throws IllegalArgumentException If the field is given but is not a whole
+     *                                  number, or does not fit in an int.
+     */
+    private int intField(JsonObject jsonObject, String name, int defaultValue) {
+        JsonValue value = jsonObject.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (value instanceof JsonNumber && ((JsonNumber) value).isIntegral()) {
+            try {
+                return ((JsonNumber) value).intValueExact();
+            } catch (ArithmeticException e) {
+                throw new IllegalArgumentException(name + " is out of range");
+            }
+        }
+        throw new IllegalArgumentException(name + " must be a whole number");
+    }
+
+    /**
+     * Checks whether a request asks for lean responses, which leave out the
+     * descriptions of animals, creatures and spells. Clients ask for them with
+     * the query parameter lean=true.
+     *
+     * @param request The request.
+     * @return true if the response should be lean, false otherwise.
+     */
+    private boolean isLean(HttpRequest request) {
+        String lean = request.getQueryParameter("lean");
+        return lean != null && (lean.equals("true") || lean.equals("1"));
+    }
+
+    /**
+     * Checks whether a request asks for the sparse board, which lists only the
+     * visible squares that hold something. Clients ask for it with the query
+     * parameter board=sparse.
+     *
+     * @param request The request.
+     * @return true if the board should be sparse, false otherwise.
+     */
+    private boolean isSparse(HttpRequest request) {
+        return "sparse".equals(request.getQueryParameter("board"));
+    }
+
+    /**
+     * Writes the current state of a session's game as the body of a response,
+     * in the form the request asks for: binary if it accepts
+     * application/octet-stream, and JSON, lean or sparse as asked, otherwise.
+     * Each form is serialized at most once per version: if the state has not
+     * changed since it was last written, the bytes cached then are copied
+     * instead. If the state is at least the compression threshold and the
+     * request accepts gzip or deflate, the compressed bytes are sent, and they
+     * are cached alongside. JSON is written from the session's published
+     * snapshot and needs no lock; for binary the caller must hold the session's
+     * read or write lock.
+     *
+     * @param session The session whose game state is written.
+     * @param request The request the state is written in answer to.
+     * @param out     The response writer the state is written to.
+     */
+    private void writeGameState(GameSession session, HttpRequest request, ResponseWriter out) {
+        boolean binary = BinaryProtocol.accepts(request);
+        Game game = binary ? session.getGame() : null;
+        GameSnapshot snapshot = binary ? null : session.getSnapshot();
+        long version = binary ? game.getVersion() : snapshot.getVersion();
+        boolean lean = isLean(request);
+        boolean sparse = isSparse(request);
+        StateCache cache = binary ? session.getBinaryStateCache() : session.getStateCache(lean, sparse);
+        if (binary) {
+            out.setContentType(BinaryProtocol.MEDIA_TYPE);
+        }
+
+        int start = out.getContentLength();
+        byte[] state = cache.get(version);
+        if (state == null) {
+            if (binary) {
+                try {
+                    BinaryProtocol.writeState(game, out.bodyStream());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
                 }
+            } else {
+                JsonOutput json = new JsonOutput(out.bodyStream());
+                snapshot.writeJson(json, lean, sparse);
+                json.flush();
             }
+            state = out.copyBody(start);
+            cache.put(version, state);
+            out.truncate(start);
         }
-        return -1;
+
+        int encoding = state.length >= compressionThreshold ? Compression.negotiate(request) : Compression.IDENTITY;
+        if (encoding != Compression.IDENTITY) {
+            byte[] compressed = cache.getEncoded(version, encoding);
+            if (compressed == null) {
+                compressed = compression.compress(ByteBuffer.wrap(state), encoding);
+                cache.putEncoded(version, encoding, compressed);
+            }
+            out.setContentEncoding(Compression.name(encoding));
+            state = compressed;
+        }
+        out.write(state, zero, state.length);
+    }
+
+    /**
+     * Writes every square an animal could move to as the JSON body of a response:
+     * {"animal": name, "version": v, "row": r, "col": c, "moves": [{"row": r,
+     * "col": c}, ...]}, where row and col give where the animal stands. The
+     * animal is named by the query parameter animal. Moves are found with the
+     * game's move generator and cached for each animal until the game changes,
+     * so clients can look them up instead of trying moves until one is
+     * accepted. The caller must hold the session's read or write lock.
+     *
+     * @param session The session whose game the moves are found in.
+     * @param request The request naming the animal.
+     * @param out     The response writer the moves are written to.
+     */
+    private void writeLegalMoves(GameSession session, HttpRequest request, ResponseWriter out) {
+        String name = request.getQueryParameter("animal");
+        int ordinal = name == null ? -one : Game.animalOrdinal(name);
+        if (ordinal < zero) {
+            sendError(out, fourhundred, "Unknown animal");
+            return;
+        }
+        Game game = session.getGame();
+        long version = game.getVersion();
+        StateCache cache = session.getMoveCache(ordinal);
+        byte[] moves = cache.get(version);
+        if (moves == null) {
+            Animal animal = game.getAnimals().get(ordinal);
+            Bitboard legal = game.legalMoves(animal);
+            int size = game.getRows() * game.getCols();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            JsonOutput json = new JsonOutput(bytes);
+            json.startObject()
+                    .write("animal", animal.getName())
+                    .write("version", version)
+                    .write("row", animal.getSquare().getRow())
+                    .write("col", animal.getSquare().getCol())
+                    .startArray("moves");
+            for (int index = legal.next(zero, size); index >= zero; index = legal.next(index + one, size)) {
+                json.startObject()
+                        .write("row", index / game.getCols())
+                        .write("col", index % game.getCols())
+                        .endObject();
+            }
+            json.endArray().endObject();
+            json.flush();
+            moves = bytes.toByteArray();
+            cache.put(version, moves);
+        }
+        out.write(moves, zero, moves.length);
+    }
+
+    /**
+     * Returns the state of a session's game serialized as JSON, from the state
+     * cache if it has not changed since it was last serialized. The state is the
+     * session's published snapshot, so the caller must hold the session's read
+     * or write lock for it to be the current state.
+     *
+     * @param session The session whose game state is returned.
+     * @return The UTF-8 bytes of the state.
+     */
+    private byte[] getGameStateBytes(GameSession session) {
+        GameSnapshot snapshot = session.getSnapshot();
+        long version = snapshot.getVersion();
+        byte[] cached = session.getStateCache().get(version);
+        if (cached == null) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            JsonOutput json = new JsonOutput(bytes);
+            snapshot.writeJson(json, false, false);
+            json.flush();
+            cached = bytes.toByteArray();
+            session.getStateCache().put(version, cached);
+        }
+        return cached;
+    }
+
+    /**
+     * Writes what changed in a session's game since the given version as the
+     * JSON body of a response. If the changes since that version are no longer
+     * all known, or the version is one the game has not reached, the full state
+     * is written instead, marked with "full": true, with the board in the form
+     * the request asks for. The caller must hold the session's read or write
+     * lock.
+     *
+     * @param session The session whose game state is written.
+     * @param since   The version of the state the client already has.
+     * @param request The request the delta is written in answer to.
+     * @param out     The response writer the delta is written to.
+     */
+    private void writeGameDelta(GameSession session, long since, HttpRequest request, ResponseWriter out) {
+        Game game = session.getGame();
+        ChangeLog changes = game.getChangeLog();
+        if (since > game.getVersion() || !changes.covers(since)) {
+            writeGameState(session, request, out);
+            return;
+        }
+        JsonOutput json = new JsonOutput(out.bodyStream());
+        writeGameDeltaJson(game, since, json, isLean(request));
+        json.flush();
     }
 
     /**
@@ -346,15 +1107,18 @@ public class GameServer {
      * error message.
      * This method formats the response in JSON.
      *
-     * @param out          The PrintWriter object to send the error message to the
+     * @param out          The response writer to send the error message to the
      *                     client.
      * @param statusCode   The HTTP status code representing the type of error.
      * @param errorMessage The error message to be sent to the client.
      */
-    private void sendError(PrintWriter out, int statusCode, String errorMessage) {
-        String jsonResponse = String.format("{\"error\": \"%s\"}", errorMessage);
-        stringHeaders(out, statusCode, jsonResponse.length());
-        out.print(jsonResponse);
+    private void sendError(ResponseWriter out, int statusCode, String errorMessage) {
+        out.setStatus(statusCode);
+        try {
+            out.body().write("{\"error\": \"" + errorMessage + "\"}");
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 
     /**
@@ -364,9 +1128,10 @@ public class GameServer {
      * the game, and the
      * current turn type (move or spell).
      *
+     * @param game The game whose state is represented.
      * @return A JsonObject representing the current game state.
      */
-    public JsonObject getGameStateAsJson() {
+    public JsonObject getGameStateAsJson(Game game) {
         JsonObjectBuilder gameStateJsonBuilder = Json.createObjectBuilder();
 
         String currentAnimalName = game.getCurrentAnimalName();
@@ -376,28 +1141,75 @@ public class GameServer {
                 .add("gameOver", game.gameOver())
                 .add("currentAnimalTurn", currentAnimalName)
                 .add("nextAnimalTurn", nextAnimalName)
-                .add("status", this.game.status)
-                .add("currentAnimalTurnType", turnType);
+                .add("status", game.status)
+                .add("currentAnimalTurnType", game.getTurnType())
+                .add("version", game.getVersion())
+                .add("full", true);
         return gameStateJsonBuilder.build();
     }
 
     /**
-     * Sends HTTP headers with the given status code to the client.
-     * 
-     * @param out           The PrintWriter to send data to the client.
-     * @param statusCode    The HTTP status code to be sent.
-     * @param contentlength the length of the content of the response
-     * @return a string of the header
-     */
-    public String stringHeaders(PrintWriter out, int statusCode, int contentLength) {
-        String response = "HTTP/1.1 " + statusCode + "\r\n"
-                + "Access-Control-Allow-Origin: *\r\n"
-                + "Access-Control-Allow-Methods: *\r\n"
-                + "Access-Control-Allow-Headers: *\r\n"
-                + "Access-Control-Max-Age: 86400\r\n"
-                + "Content-Type: application/json\r\n"
-                + "Content-Length: " + contentLength + "\r\n"
-                + "\r\n";
-        return response;
+     * Writes the current state of the game straight to the output, in one pass
+     * over the board and without building a JsonObject first. The output is the
+     * same as writing {@link #getGameStateAsJson(Game)}, or leaves the
+     * descriptions out in lean mode. In sparse mode the board is replaced by the
+     * members written by {@link Game#writeSparseJson(JsonOutput, boolean)}. The
+     * state is written from a snapshot of the game taken now.
+     *
+     * @param game   The game whose state is written.
+     * @param out    The output to write to.
+     * @param lean   Whether to leave the descriptions out.
+     * @param sparse Whether to list only the visible squares that hold
+     *               something.
+     */
+    public void writeGameStateJson(Game game, JsonOutput out, boolean lean, boolean sparse) {
+        game.snapshot().writeJson(out, lean, sparse);
+    }
+
+    /**
+     * Writes only the parts of the game state that changed since the given
+     * version straight to the output: the contents of each visible square that
+     * changed, and those top level fields of the state that changed. A square
+     * that is still hidden is left out even if something on it changed, so the
+     * delta gives away no more than the full state does. A client applies it
+     * to the state it has at that version to get the state at the current
+     * version. The game's change log must cover the given version.
+     *
+     * @param game  The game whose changes are written.
+     * @param since The version of the state the client already has.
+     * @param out   The output to write to.
+     * @param lean  Whether to leave the descriptions out.
+     */
+    public void writeGameDeltaJson(Game game, long since, JsonOutput out, boolean lean) {
+        BitSet squares = new BitSet();
+        int fields = game.getChangeLog().collect(since, squares);
+
+        out.startObject()
+                .write("version", game.getVersion())
+                .write("since", since)
+                .write("full", false)
+                .startArray("squares");
+        Bitboard visible = game.getVisibleBits();
+        for (int index = squares.nextSetBit(zero); index >= zero; index = squares.nextSetBit(index + one)) {
+            if (visible.get(index)) {
+                game.writeSquareEntryJson(out, index / game.getCols(), index % game.getCols(), lean);
+            }
+        }
+        out.endArray();
+
+        if (ChangeLog.contains(fields, ChangeLog.GAME_OVER)) {
+            out.write("gameOver", game.gameOver());
+        }
+        if (ChangeLog.contains(fields, ChangeLog.TURN)) {
+            out.write("currentAnimalTurn", game.getCurrentAnimalName())
+                    .write("nextAnimalTurn", game.getNextAnimalName());
+        }
+        if (ChangeLog.contains(fields, ChangeLog.STATUS)) {
+            out.write("status", game.status);
+        }
+        if (ChangeLog.contains(fields, ChangeLog.TURN_TYPE)) {
+            out.write("currentAnimalTurnType", game.getTurnType());
+        }
+        out.endObject();
     }
 }
@@ -0,0 +1,188 @@
+package woodland;
+
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Represents one match hosted by the server: a game together with the id
+ * clients use to address it, the seed and configuration it was created from
+ * and the lock that
+ * keeps requests to it consistent. Requests that change the game take the
+ * write lock; requests that only read it share the read lock, so reads of one
+ * game run concurrently and never wait for another game. Readers that only
+ * need the state take the session's published snapshot instead, without any
+ * lock.
+ */
+public class GameSession {
+    private String id;
+    private long seed;
+    private GameConfig config;
+    private volatile Game game;
+    private volatile GameSnapshot snapshot;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final StateCache[] stateCaches = {new StateCache(), new StateCache(), new StateCache(),
+            new StateCache()};
+    private final StateCache binaryStateCache = new StateCache();
+    private final StateCache[] moveCaches = new StateCache[Game.animalCount()];
+    private final EventStream events = new EventStream();
+
+    /**
+     * Creates a session with a new game generated from the given seed.
+     *
+     * @param id   The id clients use to address the game.
+     * @param seed The seed used to generate the game.
+     */
+    public GameSession(String id, long seed) {
+        this(id, seed, GameConfig.DEFAULT);
+    }
+
+    /**
+     * Creates a session with a new game generated from the given seed and
+     * configuration.
+     *
+     * @param id     The id clients use to address the game.
+     * @param seed   The seed used to generate the game.
+     * @param config The size of the board and the number of creatures and
+     *               spells.
+     */
+    public GameSession(String id, long seed, GameConfig config) {
+        this.id = id;
+        this.seed = seed;
+        this.config = config;
+        this.game = new Game(seed, config);
+        this.snapshot = game.snapshot();
+        for (int i = 0; i < moveCaches.length; i++) {
+            moveCaches[i] = new StateCache();
+        }
+    }
+
+    /**
+     * Returns the id clients use to address the game.
+     *
+     * @return The id of the game.
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Returns the seed the game was generated from.
+     *
+     * @return The seed of the game.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Returns the configuration the game was generated from.
+     *
+     * @return The configuration of the game.
+     */
+    public GameConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Returns the game currently played in this session.
+     *
+     * @return The game.
+     */
+    public Game getGame() {
+        return game;
+    }
+
+    /**
+     * Returns the snapshot of the game last published. Reading it needs no
+     * lock; it is the state of the game after the last change that was
+     * published, and stays the same however the game goes on.
+     *
+     * @return The snapshot.
+     */
+    public GameSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Publishes a snapshot of the game as it is now, for readers that do not
+     * take the lock. The caller must hold the write lock.
+     */
+    public void publish() {
+        snapshot = game.snapshot();
+    }
+
+    /**
+     * Returns the lock guarding the game. Callers changing the game must hold
+     * the write lock and callers reading it must hold the read lock.
+     *
+     * @return The lock of this session.
+     */
+    public ReadWriteLock getLock() {
+        return lock;
+    }
+
+    /**
+     * Replaces the game with a new one generated from the same seed and
+     * configuration. The new game
+     * carries on from the old game's version, and its snapshot is published.
+     * The caller must hold the write lock.
+     */
+    public void reset() {
+        Game fresh = new Game(seed, config);
+        fresh.continueVersionsOf(game);
+        this.game = fresh;
+        publish();
+    }
+
+    /**
+     * Returns the cache of serialized states of this session's game.
+     *
+     * @return The state cache.
+     */
+    public StateCache getStateCache() {
+        return stateCaches[0];
+    }
+
+    /**
+     * Returns the cache of serialized states of this session's game in one of
+     * the forms clients can ask for. Each form is cached separately.
+     *
+     * @param lean   Whether the states leave out the descriptions.
+     * @param sparse Whether the states list only the visible squares that hold
+     *               something.
+     * @return The state cache for that form.
+     */
+    public StateCache getStateCache(boolean lean, boolean sparse) {
+        return stateCaches[(lean ? 1 : 0) | (sparse ? 2 : 0)];
+    }
+
+    /**
+     * Returns the cache of binary encoded states of this session's game.
+     *
+     * @return The binary state cache.
+     */
+    public StateCache getBinaryStateCache() {
+        return binaryStateCache;
+    }
+
+    /**
+     * Returns the cache of serialized legal moves of one of the animals of this
+     * session's game.
+     *
+     * @param animal The position of the animal in the turn order.
+     * @return The legal move cache for that animal.
+     */
+    public StateCache getMoveCache(int animal) {
+        return moveCaches[animal];
+    }
+
+    /**
+     * Returns the stream of events pushed to clients watching this session's
+     * game.
+     *
+     * @return The event stream.
+     */
+    public EventStream getEvents() {
+        return events;
+    }
+}
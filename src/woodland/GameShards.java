@@ -0,0 +1,89 @@
+package woodland;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Applies the actions that change games on a fixed set of worker shards. Every
+ * shard is a single thread with its own mailbox, and every game is assigned to
+ * one shard by hashing its id. All actions for one game are therefore applied
+ * by the same thread, one after the other in the order they arrived, while
+ * games on different shards are changed in parallel. This makes the game logic,
+ * which is not thread safe, safe to use without locking individual fields, and
+ * lets throughput grow with the number of cores.
+ */
+public class GameShards {
+    private ExecutorService[] shards;
+
+    /**
+     * An action applied to a game on its shard.
+     *
+     * @param <T> The type of the action's result.
+     */
+    public interface Action<T> {
+        /**
+         * Applies the action.
+         *
+         * @return The result of the action.
+         * @throws IOException If the action fails to write its response.
+         */
+        T apply() throws IOException;
+    }
+
+    /**
+     * Creates the given number of shards, each with its own worker thread.
+     *
+     * @param count The number of shards, usually the number of cores.
+     */
+    public GameShards(int count) {
+        shards = new ExecutorService[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = Executors.newSingleThreadExecutor(Thread.ofPlatform().name("game-shard-" + i).daemon().factory());
+        }
+    }
+
+    /**
+     * Returns the shard a game is assigned to.
+     *
+     * @param id The id of the game.
+     * @return The index of the game's shard.
+     */
+    public int shardOf(String id) {
+        int hash = id.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), shards.length);
+    }
+
+    /**
+     * Queues an action on the shard of the given game and waits for it to be
+     * applied. Actions for the same game are applied in the order this method is
+     * called.
+     *
+     * @param <T>     The type of the action's result.
+     * @param session The session holding the game the action applies to.
+     * @param action  The action.
+     * @return The result of the action.
+     * @throws IOException If the action fails to write its response.
+     */
+    public <T> T apply(GameSession session, Action<T> action) throws IOException {
+        Future<T> result = shards[shardOf(session.getId())].submit(action::apply);
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the game", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+}
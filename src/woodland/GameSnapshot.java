@@ -0,0 +1,338 @@
+package woodland;
+
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * The whole state of a game at one version: the board, the animals, the
+ * creatures and the turn. A snapshot never changes once taken, so any number
+ * of readers can use it without a lock while the game goes on; a reader that
+ * holds on to a snapshot keeps seeing the same state.
+ *
+ * Each snapshot is made from the one before by copying only what changed.
+ * The board is kept as rows of the squares that are visible or hold
+ * something, sorted by column, and the rows are grouped in chunks of 64. A new
+ * snapshot copies the list of chunks, the chunks holding a changed row and the
+ * changed rows, and shares every other row, square, animal and creature with
+ * the snapshot before it, so taking a snapshot costs in proportion to what
+ * changed rather than to the size of the board.
+ */
+public final class GameSnapshot {
+    private static final int CHUNK_SHIFT = 6;
+    private static final int CHUNK_ROWS = 1 << CHUNK_SHIFT;
+    private static final SquareSnapshot[] EMPTY_ROW = new SquareSnapshot[0];
+
+    private final long version;
+    private final int rows;
+    private final int cols;
+    private final SquareSnapshot[][][] chunks;
+    private final boolean gameOver;
+    private final String currentAnimalName;
+    private final String nextAnimalName;
+    private final String status;
+    private final String turnType;
+
+    /**
+     * Creates a snapshot from its board, taking the turn from the game.
+     *
+     * @param game   The game.
+     * @param chunks The rows of the board, in chunks.
+     */
+    private GameSnapshot(Game game, SquareSnapshot[][][] chunks) {
+        this.version = game.getVersion();
+        this.rows = game.getRows();
+        this.cols = game.getCols();
+        this.chunks = chunks;
+        this.gameOver = game.gameOver();
+        this.currentAnimalName = game.getCurrentAnimalName();
+        this.nextAnimalName = game.getNextAnimalName();
+        this.status = game.status;
+        this.turnType = game.getTurnType();
+    }
+
+    /**
+     * Takes a snapshot of a whole game, going through every square it has used.
+     *
+     * @param game The game.
+     * @return The snapshot.
+     */
+    static GameSnapshot of(Game game) {
+        int rows = game.getRows();
+        SquareSnapshot[][][] chunks = new SquareSnapshot[(rows + CHUNK_ROWS - 1) >>> CHUNK_SHIFT][][];
+        for (int chunk = 0; chunk < chunks.length; chunk++) {
+            chunks[chunk] = new SquareSnapshot[Math.min(CHUNK_ROWS, rows - (chunk << CHUNK_SHIFT))][];
+        }
+        RowIndex board = game.board;
+        for (int row = 0; row < rows; row++) {
+            SquareSnapshot[] squares = new SquareSnapshot[board.count(row)];
+            int count = 0;
+            for (int i = 0; i < squares.length; i++) {
+                SquareSnapshot square = snapshotOf(board.squareAt(row, i));
+                if (square != null) {
+                    squares[count++] = square;
+                }
+            }
+            chunks[row >>> CHUNK_SHIFT][row & (CHUNK_ROWS - 1)] = count == 0 ? EMPTY_ROW
+                    : Arrays.copyOf(squares, count);
+        }
+        return new GameSnapshot(game, chunks);
+    }
+
+    /**
+     * Takes the next snapshot of a game, copying from this one only the rows
+     * holding a square that changed since this snapshot's version. The game's
+     * change log must still cover this snapshot's version.
+     *
+     * @param game The game this snapshot was taken of.
+     * @return The new snapshot.
+     */
+    GameSnapshot advance(Game game) {
+        int[] changed = game.getChangeLog().collectSquares(version);
+        Arrays.sort(changed);
+        SquareSnapshot[][][] newChunks = chunks;
+        int copiedChunk = -1;
+        int[] rowCols = new int[changed.length];
+        SquareSnapshot[] rowSquares = new SquareSnapshot[changed.length];
+        int i = 0;
+        while (i < changed.length) {
+            int row = changed[i] / cols;
+            int count = 0;
+            for (; i < changed.length && changed[i] / cols == row; i++) {
+                if (count > 0 && rowCols[count - 1] == changed[i] % cols) {
+                    continue;
+                }
+                rowCols[count] = changed[i] % cols;
+                rowSquares[count] = snapshotOf(game.getSquare(row, rowCols[count]));
+                count++;
+            }
+            int chunk = row >>> CHUNK_SHIFT;
+            if (newChunks == chunks) {
+                newChunks = chunks.clone();
+            }
+            if (chunk != copiedChunk) {
+                newChunks[chunk] = newChunks[chunk].clone();
+                copiedChunk = chunk;
+            }
+            int slot = row & (CHUNK_ROWS - 1);
+            newChunks[chunk][slot] = merge(newChunks[chunk][slot], rowCols, rowSquares, count);
+        }
+        return new GameSnapshot(game, newChunks);
+    }
+
+    /**
+     * Takes a snapshot of a square and what is on it.
+     *
+     * @param square The square.
+     * @return The snapshot, or null if the square is hidden and holds nothing.
+     */
+    private static SquareSnapshot snapshotOf(Square square) {
+        if (!square.visible && !square.hasAnimal && !square.hasCreature && !square.hasSpell) {
+            return null;
+        }
+        AnimalSnapshot animal = square.getAnimal() == null ? null : new AnimalSnapshot(square.getAnimal());
+        CreatureSnapshot creature = square.getCreature() == null ? null : new CreatureSnapshot(square.getCreature());
+        return new SquareSnapshot(square, animal, creature);
+    }
+
+    /**
+     * Makes a new row from an old one and the squares of it that changed.
+     *
+     * @param old     The old row, sorted by column.
+     * @param cols    The columns of the changed squares, in increasing order.
+     * @param squares The new snapshots of the changed squares, null for a square
+     *                that is no longer kept.
+     * @param count   The number of changed squares.
+     * @return The new row, sorted by column.
+     */
+    private static SquareSnapshot[] merge(SquareSnapshot[] old, int[] cols, SquareSnapshot[] squares, int count) {
+        SquareSnapshot[] merged = new SquareSnapshot[old.length + count];
+        int size = 0;
+        int i = 0;
+        for (int j = 0; j < count; j++) {
+            while (i < old.length && old[i].getCol() < cols[j]) {
+                merged[size++] = old[i++];
+            }
+            if (i < old.length && old[i].getCol() == cols[j]) {
+                i++;
+            }
+            if (squares[j] != null) {
+                merged[size++] = squares[j];
+            }
+        }
+        while (i < old.length) {
+            merged[size++] = old[i++];
+        }
+        return size == 0 ? EMPTY_ROW : size == merged.length ? merged : Arrays.copyOf(merged, size);
+    }
+
+    /**
+     * Returns the squares kept of a row.
+     *
+     * @param row The row.
+     * @return The squares, sorted by column.
+     */
+    private SquareSnapshot[] row(int row) {
+        return chunks[row >>> CHUNK_SHIFT][row & (CHUNK_ROWS - 1)];
+    }
+
+    /**
+     * Returns the version of the game state the snapshot was taken at.
+     *
+     * @return The state version.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the number of rows of the board.
+     *
+     * @return The number of rows.
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Returns the number of columns of the board.
+     *
+     * @return The number of columns.
+     */
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Returns whether the game was over.
+     *
+     * @return true if the game was over.
+     */
+    public boolean isGameOver() {
+        return gameOver;
+    }
+
+    /**
+     * Returns the name of the animal whose turn it was.
+     *
+     * @return The name of the current animal.
+     */
+    public String getCurrentAnimalName() {
+        return currentAnimalName;
+    }
+
+    /**
+     * Returns the name of the animal whose turn came next.
+     *
+     * @return The name of the next animal.
+     */
+    public String getNextAnimalName() {
+        return nextAnimalName;
+    }
+
+    /**
+     * Returns the status message of the game.
+     *
+     * @return The status message.
+     */
+    public String getStatus() {
+        return status;
+    }
+
+    /**
+     * Returns the type of action the current animal took next, either "move"
+     * or "spell".
+     *
+     * @return The turn type.
+     */
+    public String getTurnType() {
+        return turnType;
+    }
+
+    /**
+     * Writes the state as a JSON object, the body of GET /game: the board,
+     * whether the game is over, the current and next animal, the status, the
+     * turn type and the version.
+     *
+     * @param out    The output to write to.
+     * @param lean   Whether to leave the descriptions out.
+     * @param sparse Whether to list only the visible squares that hold
+     *               something.
+     */
+    public void writeJson(JsonOutput out, boolean lean, boolean sparse) {
+        out.startObject();
+        if (sparse) {
+            writeSparseBoard(out, lean);
+        } else {
+            writeBoard(out, lean);
+        }
+        out.write("gameOver", gameOver)
+                .write("currentAnimalTurn", currentAnimalName)
+                .write("nextAnimalTurn", nextAnimalName)
+                .write("status", status)
+                .write("currentAnimalTurnType", turnType)
+                .write("version", version)
+                .write("full", true)
+                .endObject();
+    }
+
+    /**
+     * Writes the board as an array of rows of squares, the same as
+     * {@link Game#writeJson(JsonOutput, String, boolean)}.
+     *
+     * @param out  The output to write to, positioned inside an object.
+     * @param lean Whether to leave the descriptions out.
+     */
+    private void writeBoard(JsonOutput out, boolean lean) {
+        out.startArray("board");
+        for (int i = 0; i < rows; i++) {
+            SquareSnapshot[] squares = row(i);
+            int next = 0;
+            out.startArray();
+            for (int j = 0; j < cols; j++) {
+                out.startArray();
+                if (next < squares.length && squares[next].getCol() == j) {
+                    squares[next++].writeJson(out, lean);
+                }
+                out.endArray();
+            }
+            out.endArray();
+        }
+        out.endArray();
+    }
+
+    /**
+     * Writes the board in its sparse form, the same as
+     * {@link Game#writeSparseJson(JsonOutput, boolean)}.
+     *
+     * @param out  The output to write to, positioned inside an object.
+     * @param lean Whether to leave the descriptions out.
+     */
+    private void writeSparseBoard(JsonOutput out, boolean lean) {
+        byte[] visible = new byte[(rows * cols + 7) / 8];
+        for (int i = 0; i < rows; i++) {
+            for (SquareSnapshot square : row(i)) {
+                if (square.isVisible()) {
+                    int index = i * cols + square.getCol();
+                    visible[index >>> 3] |= (byte) (0x80 >>> (index & 7));
+                }
+            }
+        }
+        out.write("rows", rows)
+                .write("cols", cols)
+                .write("visible", Base64.getEncoder().encodeToString(visible))
+                .startArray("squares");
+        for (int i = 0; i < rows; i++) {
+            for (SquareSnapshot square : row(i)) {
+                if (square.isVisible() && (square.getAnimal() != null || square.getCreature() != null)) {
+                    out.startObject()
+                            .write("row", i)
+                            .write("col", square.getCol())
+                            .startArray("contents");
+                    square.writeJson(out, lean);
+                    out.endArray().endObject();
+                }
+            }
+        }
+        out.endArray();
+    }
+}
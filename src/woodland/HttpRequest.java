@@ -0,0 +1,359 @@
+package woodland;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Represents a single HTTP request read from a client connection. The request
+ * line and headers are read as ISO-8859-1 text and the body is read as exactly
+ * {@code Content-Length} bytes, so several requests can be read one after the
+ * other from the same connection.
+ */
+public class HttpRequest {
+    private String method;
+    private String target;
+    private String version;
+    private Map<String, String> headers;
+    private String body;
+    private byte[] bodyBytes;
+
+    /**
+     * Constructs a request from its already parsed parts.
+     *
+     * @param method  The request method, for example GET or POST.
+     * @param target  The request target, for example /game.
+     * @param version The protocol version from the request line.
+     * @param headers The request headers, keyed by lower case header name.
+     * @param body    The request body, or an empty string if there is none.
+     */
+    public HttpRequest(String method, String target, String version, Map<String, String> headers, String body) {
+        this.method = method;
+        this.target = target;
+        this.version = version;
+        this.headers = headers;
+        this.body = body;
+    }
+
+    /**
+     * Constructs a request from its already parsed parts, keeping the body as the
+     * bytes received. The body is only decoded as text if it is asked for.
+     *
+     * @param method    The request method, for example GET or POST.
+     * @param target    The request target, for example /game.
+     * @param version   The protocol version from the request line.
+     * @param headers   The request headers, keyed by lower case header name.
+     * @param bodyBytes The request body as received.
+     */
+    public HttpRequest(String method, String target, String version, Map<String, String> headers, byte[] bodyBytes) {
+        this.method = method;
+        this.target = target;
+        this.version = version;
+        this.headers = headers;
+        this.bodyBytes = bodyBytes;
+    }
+
+    /**
+     * Reads the next request from the given stream. Blank lines before the request
+     * line are skipped, as allowed by RFC 9112. The request line and headers are
+     * read up to the blank line that ends them, and no more than the given size
+     * of request is read, so a client cannot make the server hold an ever
+     * growing line, header list or body.
+     *
+     * @param in      The stream connected to the client.
+     * @param maxSize The most bytes a request, head and body together, may
+     *                take.
+     * @return The request read, or null if the client closed the connection before
+     *         sending another request.
+     * @throws IOException                    If reading from the client fails.
+     * @throws RequestTooLargeException       If the request is larger than the
+     *                                        given size.
+     * @throws NumberFormatException          If the Content-Length header is not a
+     *                                        number of zero or more.
+     * @throws ArrayIndexOutOfBoundsException If the request line is malformed.
+     */
+    public static HttpRequest read(InputStream in, int maxSize) throws IOException {
+        ByteArrayOutputStream head = new ByteArrayOutputStream();
+        int size = 0;
+        int lineLength = 0;
+        int c = in.read();
+        while (c != -1) {
+            if (++size > maxSize) {
+                throw new RequestTooLargeException("Request head longer than " + maxSize + " bytes", true);
+            }
+            if (c == '\n') {
+                if (lineLength == 0 && head.size() > 0) {
+                    break;
+                }
+                lineLength = 0;
+            } else if (c != '\r') {
+                lineLength++;
+            }
+            if (head.size() > 0 || lineLength > 0) {
+                head.write(c);
+            }
+            c = in.read();
+        }
+        if (head.size() == 0) {
+            return null;
+        }
+
+        String[] lines = head.toString(StandardCharsets.ISO_8859_1).replace("\r", "").split("\n");
+        Map<String, String> headers = new HashMap<>();
+        for (int i = 1; i < lines.length; i++) {
+            addHeader(headers, lines[i]);
+        }
+        int contentLength = contentLength(headers);
+        checkBodySize(contentLength, maxSize - size);
+
+        byte[] body = in.readNBytes(contentLength);
+        return fromRequestLine(lines[0].split(" "), headers, body);
+    }
+
+    /**
+     * Parses the next request from a buffer of bytes received from a client. If
+     * the buffer does not yet hold a complete request (request line, headers and
+     * the whole body), nothing is consumed and null is returned so the caller can
+     * wait for more bytes. Otherwise the buffer's position is moved past the
+     * request, leaving any pipelined requests that follow it in the buffer.
+     *
+     * @param buffer  The bytes received so far, between position and limit.
+     * @param maxSize The most bytes a request, head and body together, may
+     *                take.
+     * @return The request parsed, or null if the request is not complete yet.
+     * @throws RequestTooLargeException       If the request is larger than the
+     *                                        given size, as soon as that is known.
+     * @throws NumberFormatException          If the Content-Length header is not a
+     *                                        number of zero or more.
+     * @throws ArrayIndexOutOfBoundsException If the request line is malformed.
+     */
+    public static HttpRequest parse(ByteBuffer buffer, int maxSize) {
+        int start = buffer.position();
+        while (start < buffer.limit() && (buffer.get(start) == '\r' || buffer.get(start) == '\n')) {
+            start++;
+        }
+
+        int headEnd = -1;
+        int bodyStart = -1;
+        for (int i = start; i < buffer.limit() && headEnd < 0; i++) {
+            if (buffer.get(i) != '\n') {
+                continue;
+            }
+            if (i + 1 < buffer.limit() && buffer.get(i + 1) == '\n') {
+                headEnd = i;
+                bodyStart = i + 2;
+            } else if (i + 2 < buffer.limit() && buffer.get(i + 1) == '\r' && buffer.get(i + 2) == '\n') {
+                headEnd = i;
+                bodyStart = i + 3;
+            }
+        }
+        if (headEnd < 0) {
+            if (buffer.limit() - start > maxSize) {
+                throw new RequestTooLargeException("Request head longer than " + maxSize + " bytes", true);
+            }
+            return null;
+        }
+        if (bodyStart - start > maxSize) {
+            throw new RequestTooLargeException("Request head longer than " + maxSize + " bytes", true);
+        }
+
+        String[] lines = decode(buffer, start, headEnd).replace("\r", "").split("\n");
+        Map<String, String> headers = new HashMap<>();
+        for (int i = 1; i < lines.length; i++) {
+            addHeader(headers, lines[i]);
+        }
+        int contentLength = contentLength(headers);
+        checkBodySize(contentLength, maxSize - (bodyStart - start));
+        if (buffer.limit() - bodyStart < contentLength) {
+            return null;
+        }
+
+        byte[] body = new byte[contentLength];
+        buffer.get(bodyStart, body);
+        buffer.position(bodyStart + contentLength);
+        return fromRequestLine(lines[0].split(" "), headers, body);
+    }
+
+    /**
+     * Builds a request from its split request line, headers and body.
+     *
+     * @param requestLine The request line split on spaces.
+     * @param headers     The request headers, keyed by lower case header name.
+     * @param body        The request body as received.
+     * @return The request.
+     */
+    private static HttpRequest fromRequestLine(String[] requestLine, Map<String, String> headers, byte[] body) {
+        String method = requestLine[0];
+        String target = requestLine[1];
+        String version = requestLine.length > 2 ? requestLine[2] : "HTTP/1.0";
+        return new HttpRequest(method, target, version, headers, body);
+    }
+
+    /**
+     * Adds a single {@code Name: value} header line to the header map.
+     *
+     * @param headers The header map to add to.
+     * @param line    The header line.
+     */
+    private static void addHeader(Map<String, String> headers, String line) {
+        int colon = line.indexOf(':');
+        if (colon > 0) {
+            headers.put(line.substring(0, colon).trim().toLowerCase(), line.substring(colon + 1).trim());
+        }
+    }
+
+    /**
+     * Returns the body length announced by the Content-Length header. The
+     * header must be a plain decimal number; a sign, a negative length or
+     * anything else is rejected before any room is made for the body.
+     *
+     * @param headers The request headers.
+     * @return The body length, or 0 if the header was not sent.
+     * @throws NumberFormatException If the header is not a number of zero or
+     *                               more that fits in an int.
+     */
+    private static int contentLength(Map<String, String> headers) {
+        String contentLength = headers.get("content-length");
+        if (contentLength == null) {
+            return 0;
+        }
+        if (contentLength.isEmpty() || contentLength.chars().anyMatch(c -> c < '0' || c > '9')) {
+            throw new NumberFormatException("Invalid Content-Length: " + contentLength);
+        }
+        return Integer.parseInt(contentLength);
+    }
+
+    /**
+     * Checks that a body fits in what is left of the request size once the head
+     * has been read, before any room is made for it.
+     *
+     * @param contentLength The length of the body.
+     * @param room          The bytes left for the body.
+     * @throws RequestTooLargeException If the body does not fit.
+     */
+    private static void checkBodySize(int contentLength, int room) {
+        if (contentLength > room) {
+            throw new RequestTooLargeException("Request body of " + contentLength + " bytes is too large", false);
+        }
+    }
+
+    /**
+     * Decodes a range of a buffer as ISO-8859-1 text without moving its position.
+     *
+     * @param buffer The buffer to decode from.
+     * @param from   The index of the first byte.
+     * @param to     The index after the last byte.
+     * @return The decoded text.
+     */
+    private static String decode(ByteBuffer buffer, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        buffer.get(from, bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Returns the request method.
+     *
+     * @return The request method, for example GET.
+     */
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * Returns the request target as sent on the request line.
+     *
+     * @return The request target, for example /game.
+     */
+    public String getTarget() {
+        return target;
+    }
+
+    /**
+     * Returns the path of the request target, without any query string.
+     *
+     * @return The request path, for example /games/3.
+     */
+    public String getPath() {
+        int query = target.indexOf('?');
+        return query < 0 ? target : target.substring(0, query);
+    }
+
+    /**
+     * Returns the value of a query string parameter. Values are not percent
+     * decoded, as none of the values the server accepts need encoding.
+     *
+     * @param name The parameter name.
+     * @return The parameter value, an empty string if the parameter has no value,
+     *         or null if the parameter was not sent.
+     */
+    public String getQueryParameter(String name) {
+        int query = target.indexOf('?');
+        if (query < 0) {
+            return null;
+        }
+        for (String parameter : target.substring(query + 1).split("&")) {
+            int equals = parameter.indexOf('=');
+            String key = equals < 0 ? parameter : parameter.substring(0, equals);
+            if (key.equals(name)) {
+                return equals < 0 ? "" : parameter.substring(equals + 1);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the value of a request header.
+     *
+     * @param name The header name, in any case.
+     * @return The header value, or null if the header was not sent.
+     */
+    public String getHeader(String name) {
+        return headers.get(name.toLowerCase());
+    }
+
+    /**
+     * Returns the request body.
+     *
+     * @return The body decoded as UTF-8, or an empty string if there is none.
+     */
+    public String getBody() {
+        if (body == null) {
+            body = new String(bodyBytes, StandardCharsets.UTF_8);
+        }
+        return body;
+    }
+
+    /**
+     * Returns the request body as the bytes received.
+     *
+     * @return The body, or an empty array if there is none. The array must not
+     *         be modified.
+     */
+    public byte[] getBodyBytes() {
+        if (bodyBytes == null) {
+            bodyBytes = body.getBytes(StandardCharsets.UTF_8);
+        }
+        return bodyBytes;
+    }
+
+    /**
+     * Checks whether the client wants the connection kept open after this request.
+     * HTTP/1.1 connections are persistent unless the client sends
+     * {@code Connection: close}; HTTP/1.0 connections are only kept open when the
+     * client asks for {@code Connection: keep-alive}.
+     *
+     * @return true if the connection may be reused, false otherwise.
+     */
+    public boolean isKeepAlive() {
+        String connection = getHeader("connection");
+        if (version.equals("HTTP/1.1")) {
+            return connection == null || !connection.equalsIgnoreCase("close");
+        }
+        return connection != null && connection.equalsIgnoreCase("keep-alive");
+    }
+}
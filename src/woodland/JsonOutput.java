@@ -0,0 +1,328 @@
+package woodland;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Writes JSON as bytes straight to an output stream, in one pass and without
+ * building a tree of values first. Strings are escaped the same way the
+ * javax.json generator escapes them, so the output is byte for byte the same
+ * as writing the equivalent JsonObject with a JsonWriter.
+ *
+ * Parts of the output that never change, such as the descriptions of animals,
+ * creatures and spells, can be serialized once with {@link #member(String,
+ * String)} and spliced in as raw bytes with {@link #fragment(byte[])}.
+ *
+ * A JsonOutput is not thread safe and is used for one document at a time.
+ */
+public class JsonOutput {
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final Map<String, byte[]> MEMBERS = new ConcurrentHashMap<>();
+
+    private OutputStream out;
+    private byte[] buffer = new byte[8192];
+    private int count;
+    private long first = 1;
+    private int depth;
+
+    /**
+     * Creates a JSON output writing to the given stream.
+     *
+     * @param out The stream the JSON is written to.
+     */
+    public JsonOutput(OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Serializes an object member holding a string, once per distinct name and
+     * value, so it can be spliced into documents with {@link #fragment(byte[])}.
+     *
+     * @param name  The name of the member.
+     * @param value The string value of the member.
+     * @return The bytes of {@code "name":"value"}, escaped. The array is shared
+     *         and must not be modified.
+     */
+    public static byte[] member(String name, String value) {
+        return MEMBERS.computeIfAbsent(name + '\u0000' + value, key -> {
+            JsonOutput member = new JsonOutput(null);
+            member.string(name);
+            member.put((byte) ':');
+            member.string(value);
+            byte[] bytes = new byte[member.count];
+            System.arraycopy(member.buffer, 0, bytes, 0, member.count);
+            return bytes;
+        });
+    }
+
+    /**
+     * Starts an object as the next value of the enclosing array, or as the whole
+     * document.
+     *
+     * @return This output.
+     */
+    public JsonOutput startObject() {
+        separate();
+        return open((byte) '{');
+    }
+
+    /**
+     * Starts an object as the value of a member of the enclosing object.
+     *
+     * @param name The name of the member.
+     * @return This output.
+     */
+    public JsonOutput startObject(String name) {
+        name(name);
+        return open((byte) '{');
+    }
+
+    /**
+     * Starts an array as the next value of the enclosing array, or as the whole
+     * document.
+     *
+     * @return This output.
+     */
+    public JsonOutput startArray() {
+        separate();
+        return open((byte) '[');
+    }
+
+    /**
+     * Starts an array as the value of a member of the enclosing object.
+     *
+     * @param name The name of the member.
+     * @return This output.
+     */
+    public JsonOutput startArray(String name) {
+        name(name);
+        return open((byte) '[');
+    }
+
+    /**
+     * Ends the innermost object.
+     *
+     * @return This output.
+     */
+    public JsonOutput endObject() {
+        depth--;
+        put((byte) '}');
+        return this;
+    }
+
+    /**
+     * Ends the innermost array.
+     *
+     * @return This output.
+     */
+    public JsonOutput endArray() {
+        depth--;
+        put((byte) ']');
+        return this;
+    }
+
+    /**
+     * Writes a member holding a string.
+     *
+     * @param name  The name of the member.
+     * @param value The value of the member.
+     * @return This output.
+     */
+    public JsonOutput write(String name, String value) {
+        name(name);
+        string(value);
+        return this;
+    }
+
+    /**
+     * Writes a member holding a number.
+     *
+     * @param name  The name of the member.
+     * @param value The value of the member.
+     * @return This output.
+     */
+    public JsonOutput write(String name, long value) {
+        name(name);
+        number(value);
+        return this;
+    }
+
+    /**
+     * Writes a member holding true or false.
+     *
+     * @param name  The name of the member.
+     * @param value The value of the member.
+     * @return This output.
+     */
+    public JsonOutput write(String name, boolean value) {
+        name(name);
+        ascii(value ? "true" : "false");
+        return this;
+    }
+
+    /**
+     * Splices an already serialized member or value into the document.
+     *
+     * @param fragment The bytes of the member or value, as returned by
+     *                 {@link #member(String, String)}.
+     * @return This output.
+     */
+    public JsonOutput fragment(byte[] fragment) {
+        separate();
+        ensureCapacity(fragment.length);
+        System.arraycopy(fragment, 0, buffer, count, fragment.length);
+        count += fragment.length;
+        return this;
+    }
+
+    /**
+     * Writes everything buffered so far to the stream.
+     */
+    public void flush() {
+        flushBuffer();
+    }
+
+    /**
+     * Writes the name of a member, preceded by a comma unless it is the first
+     * member of its object.
+     *
+     * @param name The name of the member.
+     */
+    private void name(String name) {
+        separate();
+        string(name);
+        put((byte) ':');
+    }
+
+    /**
+     * Writes a comma unless the next value is the first one in its object or
+     * array.
+     */
+    private void separate() {
+        long bit = 1L << depth;
+        if ((first & bit) != 0) {
+            first &= ~bit;
+        } else {
+            put((byte) ',');
+        }
+    }
+
+    /**
+     * Opens an object or array.
+     *
+     * @param bracket The opening bracket.
+     * @return This output.
+     */
+    private JsonOutput open(byte bracket) {
+        put(bracket);
+        depth++;
+        first |= 1L << depth;
+        return this;
+    }
+
+    /**
+     * Writes a quoted and escaped string. Quotes, backslashes and control
+     * characters are escaped, as is everything outside ASCII, so the output is
+     * always plain ASCII.
+     *
+     * @param value The string to write.
+     */
+    private void string(String value) {
+        put((byte) '"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') {
+                put((byte) c);
+            } else if (c == '"' || c == '\\') {
+                put((byte) '\\');
+                put((byte) c);
+            } else if (c == '\b') {
+                ascii("\\b");
+            } else if (c == '\t') {
+                ascii("\\t");
+            } else if (c == '\n') {
+                ascii("\\n");
+            } else if (c == '\f') {
+                ascii("\\f");
+            } else if (c == '\r') {
+                ascii("\\r");
+            } else {
+                ascii("\\u");
+                put(HEX[(c >> 12) & 0xF]);
+                put(HEX[(c >> 8) & 0xF]);
+                put(HEX[(c >> 4) & 0xF]);
+                put(HEX[c & 0xF]);
+            }
+        }
+        put((byte) '"');
+    }
+
+    /**
+     * Writes the decimal digits of a number.
+     *
+     * @param value The number to write.
+     */
+    private void number(long value) {
+        ascii(Long.toString(value));
+    }
+
+    /**
+     * Writes an ASCII string as it is.
+     *
+     * @param text The text to write.
+     */
+    private void ascii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            put((byte) text.charAt(i));
+        }
+    }
+
+    /**
+     * Writes a single byte to the buffer.
+     *
+     * @param b The byte to write.
+     */
+    private void put(byte b) {
+        if (count == buffer.length) {
+            ensureCapacity(1);
+        }
+        buffer[count++] = b;
+    }
+
+    /**
+     * Makes room in the buffer for the given number of bytes, by flushing it to
+     * the stream if there is one and that is enough, or by growing it otherwise.
+     *
+     * @param bytes The number of bytes about to be written.
+     */
+    private void ensureCapacity(int bytes) {
+        if (buffer.length - count >= bytes) {
+            return;
+        }
+        flushBuffer();
+        if (buffer.length - count < bytes) {
+            byte[] grown = new byte[Math.max(buffer.length * 2, count + bytes)];
+            System.arraycopy(buffer, 0, grown, 0, count);
+            buffer = grown;
+        }
+    }
+
+    /**
+     * Writes the buffered bytes to the stream, if there is one, and empties the
+     * buffer.
+     */
+    private void flushBuffer() {
+        if (out != null && count > 0) {
+            try {
+                out.write(buffer, 0, count);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            count = 0;
+        }
+    }
+}
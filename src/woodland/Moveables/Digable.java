@@ -5,6 +5,11 @@ package woodland.Moveables;
  * another.
  */
 public interface Digable {
+  /**
+   * The squares a dig reaches: any neighbouring square, or exactly two squares
+   * away in a straight or diagonal line.
+   */
+  MoveTable DIGS = MoveTable.straight(1).plus(MoveTable.diagonal(1)).plus(MoveTable.leaps(2));
 
   /**
    * Attempts to dig from the specified position to a new position.
@@ -5,6 +5,12 @@ package woodland.Moveables;
  * another.
  */
 public interface Flyable {
+    /**
+     * The squares a flight reaches: any square in the same row or column, or one
+     * square diagonally.
+     */
+    MoveTable FLIGHTS = MoveTable.straight(MoveTable.TO_EDGE).plus(MoveTable.diagonal(1));
+
     /**
      * Attempts to fly from the specified position to a new position.
      * 
@@ -6,6 +6,10 @@ package woodland.Moveables;
  * is a "long" jump.
  */
 public interface LongJumpable extends Jumpable {
+    /**
+     * The squares a long jump reaches: up to three squares in a straight line.
+     */
+    MoveTable LONG_JUMPS = MoveTable.straight(3);
 
     /**
      * Attempts to perform a long jump from the specified position to a new
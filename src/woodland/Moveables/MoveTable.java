@@ -0,0 +1,189 @@
+package woodland.Moveables;
+
+import java.util.Arrays;
+
+/**
+ * The squares a way of moving can reach from any starting square, as a table of
+ * rays. A ray is a step, given as a change of row and column, repeated up to a
+ * number of times; a jump of three squares to the right is the third square of
+ * the ray with step (0, 1) and reach 3. Tables are built once and shared, so
+ * finding every destination of an animal only walks its rays from the animal's
+ * square instead of testing every square of the board.
+ *
+ * A ray may stop at the first animal on its way, for animals that cannot move
+ * past other animals. Otherwise squares holding an animal are skipped and the
+ * ray carries on behind them.
+ *
+ * Tables are immutable.
+ */
+public final class MoveTable {
+    /**
+     * The reach of a ray that carries on to the edge of the board.
+     */
+    public static final int TO_EDGE = 0;
+    /**
+     * A table with no rays, for animals that cannot move.
+     */
+    public static final MoveTable NONE = new MoveTable(new int[0], new int[0], new int[0], new boolean[0]);
+
+    private static final int[][] STRAIGHT = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};
+    private static final int[][] DIAGONAL = {{-1, -1}, {-1, 1}, {1, -1}, {1, 1}};
+
+    private final int[] rowSteps;
+    private final int[] colSteps;
+    private final int[] reaches;
+    private final boolean[] stopsAtAnimal;
+
+    /**
+     * Creates a table from its rays.
+     *
+     * @param rowSteps      The change of row of each ray's step.
+     * @param colSteps      The change of column of each ray's step.
+     * @param reaches       How many steps each ray takes, or {@link #TO_EDGE}.
+     * @param stopsAtAnimal Whether each ray stops at the first animal on its way.
+     */
+    private MoveTable(int[] rowSteps, int[] colSteps, int[] reaches, boolean[] stopsAtAnimal) {
+        this.rowSteps = rowSteps;
+        this.colSteps = colSteps;
+        this.reaches = reaches;
+        this.stopsAtAnimal = stopsAtAnimal;
+    }
+
+    /**
+     * Creates a table of one ray for each of the given steps.
+     *
+     * @param steps The steps, each a change of row and column.
+     * @param reach How many times each step is taken, or {@link #TO_EDGE}.
+     * @return The table.
+     */
+    private static MoveTable rays(int[][] steps, int reach) {
+        int[] rowSteps = new int[steps.length];
+        int[] colSteps = new int[steps.length];
+        int[] reaches = new int[steps.length];
+        for (int i = 0; i < steps.length; i++) {
+            rowSteps[i] = steps[i][0];
+            colSteps[i] = steps[i][1];
+            reaches[i] = reach;
+        }
+        return new MoveTable(rowSteps, colSteps, reaches, new boolean[steps.length]);
+    }
+
+    /**
+     * Creates a table of moves up, down, left and right.
+     *
+     * @param reach The most squares moved, or {@link #TO_EDGE}.
+     * @return The table.
+     */
+    public static MoveTable straight(int reach) {
+        return rays(STRAIGHT, reach);
+    }
+
+    /**
+     * Creates a table of diagonal moves.
+     *
+     * @param reach The most squares moved, or {@link #TO_EDGE}.
+     * @return The table.
+     */
+    public static MoveTable diagonal(int reach) {
+        return rays(DIAGONAL, reach);
+    }
+
+    /**
+     * Creates a table of leaps that land exactly the given distance away in a
+     * straight or diagonal line, without touching the squares in between.
+     *
+     * @param distance The number of squares leapt.
+     * @return The table.
+     */
+    public static MoveTable leaps(int distance) {
+        int[][] steps = new int[STRAIGHT.length + DIAGONAL.length][];
+        for (int i = 0; i < STRAIGHT.length; i++) {
+            steps[i] = new int[] {STRAIGHT[i][0] * distance, STRAIGHT[i][1] * distance};
+            steps[STRAIGHT.length + i] = new int[] {DIAGONAL[i][0] * distance, DIAGONAL[i][1] * distance};
+        }
+        return rays(steps, 1);
+    }
+
+    /**
+     * Combines this table with another.
+     *
+     * @param other The other table.
+     * @return A table with the rays of both.
+     */
+    public MoveTable plus(MoveTable other) {
+        int size = size();
+        int[] rowSteps = Arrays.copyOf(this.rowSteps, size + other.size());
+        int[] colSteps = Arrays.copyOf(this.colSteps, size + other.size());
+        int[] reaches = Arrays.copyOf(this.reaches, size + other.size());
+        boolean[] stopsAtAnimal = Arrays.copyOf(this.stopsAtAnimal, size + other.size());
+        System.arraycopy(other.rowSteps, 0, rowSteps, size, other.size());
+        System.arraycopy(other.colSteps, 0, colSteps, size, other.size());
+        System.arraycopy(other.reaches, 0, reaches, size, other.size());
+        System.arraycopy(other.stopsAtAnimal, 0, stopsAtAnimal, size, other.size());
+        return new MoveTable(rowSteps, colSteps, reaches, stopsAtAnimal);
+    }
+
+    /**
+     * Makes the straight rays going right or down stop at the first animal on
+     * their way. This is the path an animal checks before moving: it looks at
+     * the squares after its own in the direction of increasing row or column.
+     *
+     * @return A table with the same rays, checking the path.
+     */
+    public MoveTable checkingPath() {
+        boolean[] stops = new boolean[size()];
+        for (int i = 0; i < stops.length; i++) {
+            stops[i] = (rowSteps[i] == 0 && colSteps[i] > 0) || (colSteps[i] == 0 && rowSteps[i] > 0);
+        }
+        return new MoveTable(rowSteps, colSteps, reaches, stops);
+    }
+
+    /**
+     * Returns the number of rays.
+     *
+     * @return The number of rays.
+     */
+    public int size() {
+        return reaches.length;
+    }
+
+    /**
+     * Returns the change of row of a ray's step.
+     *
+     * @param ray The index of the ray.
+     * @return The change of row.
+     */
+    public int getRowStep(int ray) {
+        return rowSteps[ray];
+    }
+
+    /**
+     * Returns the change of column of a ray's step.
+     *
+     * @param ray The index of the ray.
+     * @return The change of column.
+     */
+    public int getColStep(int ray) {
+        return colSteps[ray];
+    }
+
+    /**
+     * Returns how many steps a ray takes.
+     *
+     * @param ray The index of the ray.
+     * @return The number of steps, or {@link #TO_EDGE}.
+     */
+    public int getReach(int ray) {
+        return reaches[ray];
+    }
+
+    /**
+     * Returns whether a ray stops at the first animal on its way.
+     *
+     * @param ray The index of the ray.
+     * @return true if no square behind an animal can be reached along the ray.
+     */
+    public boolean stopsAtAnimal(int ray) {
+        return stopsAtAnimal[ray];
+    }
+}
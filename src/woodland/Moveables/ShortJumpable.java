@@ -7,6 +7,11 @@ package woodland.Moveables;
  * is a "short" jump.
  */
 public interface ShortJumpable extends Jumpable {
+    /**
+     * The squares a short jump reaches: up to two squares in a straight line or
+     * one square diagonally.
+     */
+    MoveTable SHORT_JUMPS = MoveTable.straight(2).plus(MoveTable.diagonal(1));
 
     /**
      * Attempts to perform a short jump from the specified position to a new
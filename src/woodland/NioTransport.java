@@ -0,0 +1,657 @@
+package woodland;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A non-blocking transport for a {@link GameServer}. Instead of a thread per
+ * connection, a small number of event loops each multiplex many connections
+ * over a {@link Selector}, so thousands of idle polling clients cost only their
+ * socket and a few bytes of bookkeeping. Requests are parsed straight from the
+ * bytes received and handled by the same request handler as the blocking
+ * transport, so both transports behave the same way.
+ *
+ * An event loop only answers requests that touch no game itself, in a single
+ * {@link ResponseWriter} of its own. Every other request is handled on a
+ * virtual thread, so a slow game, such as a large board being reset, holds up
+ * only the connections waiting for it rather than every connection of the
+ * loop. The response is handed back to the loop, which writes it; a connection
+ * has at most one request out at a time, and the requests it pipelined behind
+ * that one wait until the response is queued, so responses go out in order.
+ *
+ * Idle connections are looked for once a second rather than whenever the
+ * selector wakes, so the cost of the sweep does not grow with the traffic.
+ */
+public class NioTransport {
+    private GameServer server;
+    private EventLoop[] eventLoops;
+    private int readBufferSize = 16384;
+    private int selectTimeout = 1000;
+    private int sweepInterval = 1000;
+
+    /**
+     * Creates a non-blocking transport for the given server.
+     *
+     * @param server     The server whose requests this transport handles.
+     * @param eventLoops The number of event loop threads to multiplex connections
+     *                   over.
+     */
+    public NioTransport(GameServer server, int eventLoops) {
+        this.server = server;
+        this.eventLoops = new EventLoop[eventLoops];
+    }
+
+    /**
+     * Starts listening for connections on the given port. The calling thread
+     * accepts connections and hands them to the event loops in turn; it returns
+     * once the game is over.
+     *
+     * @param port The port number on which the server will listen for connections.
+     */
+    public void runServer(int port) {
+        try (ServerSocketChannel serverChannel = ServerSocketChannel.open();
+                Selector acceptSelector = Selector.open()) {
+            serverChannel.bind(new InetSocketAddress(port), server.getBacklog());
+            serverChannel.configureBlocking(false);
+            serverChannel.register(acceptSelector, SelectionKey.OP_ACCEPT);
+
+            for (int i = 0; i < eventLoops.length; i++) {
+                eventLoops[i] = new EventLoop();
+                Thread.ofPlatform().name("event-loop-" + i).daemon().start(eventLoops[i]);
+            }
+
+            int next = 0;
+            while (!server.isGameOver()) {
+                acceptSelector.select(selectTimeout);
+                acceptSelector.selectedKeys().clear();
+                SocketChannel channel = serverChannel.accept();
+                while (channel != null) {
+                    eventLoops[next].add(channel);
+                    next = (next + 1) % eventLoops.length;
+                    channel = serverChannel.accept();
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * The bookkeeping for a single connection. Bytes of an incomplete request and
+     * responses the client has not read yet are only held while they exist, so an
+     * idle connection holds no buffers at all.
+     */
+    private static class Connection {
+        private ByteBuffer partial;
+        private Queue<ByteBuffer> outbound = new ArrayDeque<>();
+        private long lastActive = System.currentTimeMillis();
+        private int served;
+        private boolean closing;
+        private SelectionKey key;
+        private GameSession streamed;
+        private StreamSubscriber subscriber;
+        private GameSession upgraded;
+        private HttpRequest upgrade;
+        private byte[] afterUpgrade;
+        private boolean busy;
+        private ByteBuffer response;
+        private boolean closeAfterResponse;
+    }
+
+    /**
+     * A subscriber served by an event loop. It keeps only the latest event
+     * offered to it and asks the event loop to write it to its connection.
+     */
+    private static class StreamSubscriber implements EventStream.Subscriber {
+        private AtomicReference<byte[]> latest = new AtomicReference<>();
+        private volatile boolean ended;
+        private Connection connection;
+        private Queue<Connection> ready;
+        private Selector selector;
+
+        /**
+         * Creates a subscriber writing to the given connection.
+         *
+         * @param connection The streaming connection.
+         * @param ready      The queue of connections the event loop has events to
+         *                   write to.
+         * @param selector   The selector of the event loop.
+         */
+        StreamSubscriber(Connection connection, Queue<Connection> ready, Selector selector) {
+            this.connection = connection;
+            this.ready = ready;
+            this.selector = selector;
+        }
+
+        @Override
+        public void offer(byte[] event) {
+            if (latest.getAndSet(event) == null) {
+                ready.add(connection);
+                selector.wakeup();
+            }
+        }
+
+        @Override
+        public void end() {
+            ended = true;
+            ready.add(connection);
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * An event loop multiplexing many connections over one selector.
+     */
+    private class EventLoop implements Runnable {
+        private Selector selector;
+        private Queue<SocketChannel> pending = new ConcurrentLinkedQueue<>();
+        private ByteBuffer readBuffer = ByteBuffer.allocateDirect(readBufferSize);
+        private ResponseWriter writer = server.acquireResponseWriter();
+        private Queue<Connection> streamsReady = new ConcurrentLinkedQueue<>();
+        private Queue<Connection> upgrades = new ArrayDeque<>();
+        private Queue<Connection> answered = new ConcurrentLinkedQueue<>();
+        private long nextSweep = System.currentTimeMillis() + sweepInterval;
+
+        /**
+         * Creates an event loop with its own selector.
+         *
+         * @throws IOException If the selector cannot be opened.
+         */
+        EventLoop() throws IOException {
+            selector = Selector.open();
+        }
+
+        /**
+         * Hands a newly accepted connection to this event loop.
+         *
+         * @param channel The accepted connection.
+         */
+        void add(SocketChannel channel) {
+            pending.add(channel);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                try {
+                    selector.select(Math.max(1, nextSweep - System.currentTimeMillis()));
+                    registerPending();
+                    flushStreams();
+                    sendAnswered();
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        try {
+                            if (key.isValid() && key.isReadable()) {
+                                read(key);
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                write(key);
+                            }
+                        } catch (IOException e) {
+                            close(key);
+                        }
+                    }
+                    handOffUpgrades();
+                    long now = System.currentTimeMillis();
+                    if (now >= nextSweep) {
+                        closeIdle(now);
+                        nextSweep = now + sweepInterval;
+                    }
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        /**
+         * Registers the connections handed over since the last pass.
+         *
+         * @throws IOException If a connection cannot be registered.
+         */
+        private void registerPending() throws IOException {
+            SocketChannel channel = pending.poll();
+            while (channel != null) {
+                channel.configureBlocking(false);
+                Connection connection = new Connection();
+                connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+                channel = pending.poll();
+            }
+        }
+
+        /**
+         * Starts writing the events offered to streaming connections since the
+         * last pass. A connection still busy writing an earlier event picks up the
+         * latest one once it is done.
+         *
+         * @throws IOException If a connection fails in a way that affects the
+         *                     event loop.
+         */
+        private void flushStreams() throws IOException {
+            Connection connection = streamsReady.poll();
+            while (connection != null) {
+                if (connection.key.isValid() && connection.outbound.isEmpty()) {
+                    try {
+                        write(connection.key);
+                    } catch (IOException e) {
+                        close(connection.key);
+                    }
+                }
+                connection = streamsReady.poll();
+            }
+        }
+
+        /**
+         * Reads whatever the client has sent, then handles every complete request
+         * received so far in order and queues their responses.
+         *
+         * @param key The key of the readable connection.
+         * @throws IOException If reading from or writing to the client fails.
+         */
+        private void read(SelectionKey key) throws IOException {
+            SocketChannel channel = (SocketChannel) key.channel();
+            Connection connection = (Connection) key.attachment();
+            readBuffer.clear();
+            int read = channel.read(readBuffer);
+            if (read < 0) {
+                close(key);
+                return;
+            }
+            readBuffer.flip();
+            connection.lastActive = System.currentTimeMillis();
+            if (connection.subscriber != null) {
+                return;
+            }
+
+            ByteBuffer input = readBuffer;
+            if (connection.partial != null) {
+                connection.partial = append(connection.partial, readBuffer);
+                connection.partial.flip();
+                input = connection.partial;
+            }
+            serve(key, input);
+        }
+
+        /**
+         * Handles the complete requests at the start of the input in order, up to
+         * the first one handed to a virtual thread, keeps what is left of the
+         * input for later and writes what has been queued.
+         *
+         * @param key   The key of the connection.
+         * @param input The bytes received from the client and not yet handled.
+         * @throws IOException If writing to the client fails.
+         */
+        private void serve(SelectionKey key, ByteBuffer input) throws IOException {
+            SocketChannel channel = (SocketChannel) key.channel();
+            Connection connection = (Connection) key.attachment();
+            while (!connection.closing && connection.subscriber == null && connection.upgrade == null
+                    && !connection.busy) {
+                HttpRequest request;
+                try {
+                    request = HttpRequest.parse(input, server.getMaxRequestSize());
+                } catch (RuntimeException e) {
+                    respondWithFailure(channel, connection, e);
+                    break;
+                }
+                if (request == null) {
+                    break;
+                }
+                respond(channel, connection, request);
+            }
+
+            if (connection.upgrade != null) {
+                connection.afterUpgrade = new byte[input.remaining()];
+                input.get(connection.afterUpgrade);
+                connection.partial = null;
+                key.cancel();
+                upgrades.add(connection);
+                return;
+            } else if (connection.closing || connection.subscriber != null || !input.hasRemaining()) {
+                connection.partial = null;
+            } else if (input.remaining() > server.getMaxRequestSize()) {
+                close(key);
+                return;
+            } else if (input != connection.partial) {
+                connection.partial = append(null, input);
+            } else {
+                connection.partial.compact();
+            }
+            write(key);
+        }
+
+        /**
+         * Handles one request. A request that touches no game is answered right
+         * away; any other is handed to a virtual thread, and the connection waits
+         * for its response before the next request it sent is handled.
+         *
+         * @param channel    The connection the request arrived on.
+         * @param connection The bookkeeping of that connection.
+         * @param request    The request to handle.
+         * @throws IOException If writing to the client fails.
+         */
+        private void respond(SocketChannel channel, Connection connection, HttpRequest request) throws IOException {
+            GameSession upgraded = server.webSocketSession(request);
+            if (upgraded != null) {
+                connection.upgraded = upgraded;
+                connection.upgrade = request;
+                return;
+            }
+            GameSession streamed = server.eventSession(request);
+            if (streamed != null) {
+                writer.reset();
+                writer.setContentType("text/event-stream");
+                send(channel, connection, writer.finishStream());
+                connection.streamed = streamed;
+                connection.subscriber = new StreamSubscriber(connection, streamsReady, selector);
+                server.subscribe(streamed, connection.subscriber);
+                return;
+            }
+            connection.served++;
+            boolean keepAlive = request.isKeepAlive() && connection.served < server.getMaxRequestsPerConnection();
+            if (!server.isTrivial(request)) {
+                connection.busy = true;
+                Thread.ofVirtual().start(() -> answer(connection, request, keepAlive));
+                return;
+            }
+            writer.reset();
+            try {
+                server.handleRequest(request, writer);
+            } catch (RuntimeException e) {
+                respondWithFailure(channel, connection, e);
+                return;
+            }
+            send(channel, connection, writer.finish(keepAlive));
+            connection.closing = !keepAlive;
+        }
+
+        /**
+         * Handles a request on a virtual thread, in a response writer taken from
+         * the server's pool, and hands a copy of the response back to the event
+         * loop to send.
+         *
+         * @param connection The bookkeeping of the connection the request arrived
+         *                   on.
+         * @param request    The request to handle.
+         * @param keepAlive  Whether the connection stays open after the response.
+         */
+        private void answer(Connection connection, HttpRequest request, boolean keepAlive) {
+            ResponseWriter out = server.acquireResponseWriter();
+            try {
+                ByteBuffer[] response;
+                boolean close = !keepAlive;
+                try {
+                    out.reset();
+                    server.handleRequest(request, out);
+                    response = out.finish(keepAlive);
+                } catch (Exception e) {
+                    out.reset();
+                    server.sendFailure(out, e);
+                    response = out.finish(false);
+                    close = true;
+                }
+                connection.response = gather(response, remaining(response));
+                connection.closeAfterResponse = close;
+            } finally {
+                server.releaseResponseWriter(out);
+            }
+            answered.add(connection);
+            selector.wakeup();
+        }
+
+        /**
+         * Queues the responses handed back by virtual threads since the last pass,
+         * then goes on with the requests their connections sent meanwhile.
+         */
+        private void sendAnswered() {
+            Connection connection = answered.poll();
+            while (connection != null) {
+                connection.busy = false;
+                SelectionKey key = connection.key;
+                if (key.isValid()) {
+                    connection.outbound.add(connection.response);
+                    connection.response = null;
+                    connection.closing = connection.closeAfterResponse;
+                    connection.lastActive = System.currentTimeMillis();
+                    try {
+                        if (connection.partial == null) {
+                            write(key);
+                        } else {
+                            connection.partial.flip();
+                            serve(key, connection.partial);
+                        }
+                    } catch (IOException e) {
+                        close(key);
+                    }
+                }
+                connection = answered.poll();
+            }
+        }
+
+        /**
+         * Sends the error response for a request that failed and marks the
+         * connection to be closed once it has been sent.
+         *
+         * @param channel    The connection the request arrived on.
+         * @param connection The bookkeeping of that connection.
+         * @param e          The exception the request failed with.
+         * @throws IOException If writing to the client fails.
+         */
+        private void respondWithFailure(SocketChannel channel, Connection connection, Exception e)
+                throws IOException {
+            writer.reset();
+            server.sendFailure(writer, e);
+            send(channel, connection, writer.finish(false));
+            connection.closing = true;
+        }
+
+        /**
+         * Sends a response with one gathering write if nothing is queued ahead of
+         * it. Whatever the socket does not accept right away is copied out of the
+         * event loop's response writer and queued, so the writer can be reused for
+         * the next request.
+         *
+         * @param channel    The connection to send on.
+         * @param connection The bookkeeping of that connection.
+         * @param response   The parts of the response.
+         * @throws IOException If writing to the client fails.
+         */
+        private void send(SocketChannel channel, Connection connection, ByteBuffer[] response) throws IOException {
+            if (connection.outbound.isEmpty()) {
+                channel.write(response);
+            }
+            int unsent = remaining(response);
+            if (unsent > 0) {
+                connection.outbound.add(gather(response, unsent));
+            }
+        }
+
+        /**
+         * Writes as much of the queued responses as the socket accepts. If the
+         * client is not reading fast enough the connection waits for the socket
+         * to become writable instead of for more requests.
+         *
+         * @param key The key of the connection.
+         * @throws IOException If writing to the client fails.
+         */
+        private void write(SelectionKey key) throws IOException {
+            SocketChannel channel = (SocketChannel) key.channel();
+            Connection connection = (Connection) key.attachment();
+            while (true) {
+                if (connection.outbound.isEmpty() && connection.subscriber != null) {
+                    byte[] event = connection.subscriber.latest.getAndSet(null);
+                    if (event != null) {
+                        connection.outbound.add(ByteBuffer.wrap(event));
+                    }
+                }
+                if (connection.outbound.isEmpty()) {
+                    break;
+                }
+                ByteBuffer buffer = connection.outbound.peek();
+                channel.write(buffer);
+                if (buffer.hasRemaining()) {
+                    key.interestOps(SelectionKey.OP_WRITE);
+                    return;
+                }
+                connection.outbound.poll();
+            }
+            if (connection.closing || (connection.subscriber != null && connection.subscriber.ended)) {
+                close(key);
+            } else {
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+
+        /**
+         * Hands connections upgraded to a WebSocket over to threads of their own.
+         * A WebSocket is a long conversation with one client rather than a series
+         * of short requests, so it is served by a blocking virtual thread like the
+         * blocking transport serves it. The connection's key was cancelled when
+         * the handshake arrived; once the selector has let go of it the connection
+         * is switched to blocking mode, any responses still queued for it are
+         * written, and the rest of the conversation happens on the new thread.
+         *
+         * @throws IOException If the selector fails.
+         */
+        private void handOffUpgrades() throws IOException {
+            if (upgrades.isEmpty()) {
+                return;
+            }
+            selector.selectNow();
+            Connection connection = upgrades.poll();
+            while (connection != null) {
+                SocketChannel channel = (SocketChannel) connection.key.channel();
+                try {
+                    channel.configureBlocking(true);
+                    for (ByteBuffer buffer : connection.outbound) {
+                        while (buffer.hasRemaining()) {
+                            channel.write(buffer);
+                        }
+                    }
+                    InputStream in = new SequenceInputStream(new ByteArrayInputStream(connection.afterUpgrade),
+                            new BufferedInputStream(channel.socket().getInputStream()));
+                    GameSession session = connection.upgraded;
+                    HttpRequest request = connection.upgrade;
+                    Thread.ofVirtual().start(() -> server.upgradeToWebSocket(session, request, in, channel));
+                } catch (IOException e) {
+                    channel.close();
+                }
+                connection = upgrades.poll();
+            }
+        }
+
+        /**
+         * Closes connections that have been idle for longer than the server's idle
+         * timeout. Streaming connections are never idle; they are sent a comment
+         * instead when nothing has been sent on them for the heartbeat interval,
+         * so a client that went away is noticed. A connection waiting for a
+         * response from a virtual thread is not idle.
+         *
+         * @param now The current time in milliseconds.
+         */
+        private void closeIdle(long now) {
+            long idleSince = now - server.getIdleTimeout();
+            long quietSince = now - server.getHeartbeatInterval();
+            for (SelectionKey key : selector.keys()) {
+                Connection connection = (Connection) key.attachment();
+                if (connection == null || connection.busy || !connection.outbound.isEmpty()) {
+                    continue;
+                }
+                if (connection.subscriber == null && connection.lastActive < idleSince) {
+                    close(key);
+                } else if (connection.subscriber != null && connection.lastActive < quietSince) {
+                    connection.lastActive = now;
+                    connection.outbound.add(ByteBuffer.wrap(EventStream.HEARTBEAT));
+                    try {
+                        write(key);
+                    } catch (IOException e) {
+                        close(key);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Closes a connection and forgets about it.
+         *
+         * @param key The key of the connection.
+         */
+        private void close(SelectionKey key) {
+            Connection connection = (Connection) key.attachment();
+            if (connection != null && connection.subscriber != null) {
+                connection.streamed.getEvents().unsubscribe(connection.subscriber);
+            }
+            key.cancel();
+            try {
+                key.channel().close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Counts the bytes left to write in the parts of a response.
+     *
+     * @param parts The parts of the response.
+     * @return The number of bytes remaining in all of them.
+     */
+    private static int remaining(ByteBuffer[] parts) {
+        int remaining = 0;
+        for (ByteBuffer part : parts) {
+            remaining += part.remaining();
+        }
+        return remaining;
+    }
+
+    /**
+     * Copies what is left to write of the parts of a response into one heap
+     * buffer, so the buffers they came from can be reused.
+     *
+     * @param parts The parts of the response.
+     * @param size  The number of bytes remaining in them.
+     * @return The copy, ready to be written.
+     */
+    private static ByteBuffer gather(ByteBuffer[] parts, int size) {
+        ByteBuffer copy = ByteBuffer.allocate(size);
+        for (ByteBuffer part : parts) {
+            copy.put(part);
+        }
+        return copy.flip();
+    }
+
+    /**
+     * Appends the remaining bytes of one buffer to another, growing it as needed.
+     *
+     * @param buffer The buffer to append to, in write mode, or null for a new one.
+     * @param bytes  The bytes to append.
+     * @return The buffer holding both, in write mode.
+     */
+    private static ByteBuffer append(ByteBuffer buffer, ByteBuffer bytes) {
+        if (buffer == null) {
+            buffer = ByteBuffer.allocate(Math.max(bytes.remaining(), 1024));
+        } else if (buffer.remaining() < bytes.remaining()) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes.remaining()));
+            buffer.flip();
+            grown.put(buffer);
+            buffer = grown;
+        }
+        buffer.put(bytes);
+        return buffer;
+    }
+}
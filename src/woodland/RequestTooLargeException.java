@@ -0,0 +1,35 @@
+package woodland;
+
+/**
+ * Thrown when a request is bigger than the server accepts, either because its
+ * request line and headers are too long or because the body it announces is.
+ * The server answers it with 431 or 413 and closes the connection, since the
+ * rest of the request is never read.
+ */
+public class RequestTooLargeException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+
+    private final boolean head;
+
+    /**
+     * Creates the exception for a request that is too large.
+     *
+     * @param message The detail message.
+     * @param head    true if the request line and headers are too long, false if
+     *                the body is.
+     */
+    public RequestTooLargeException(String message, boolean head) {
+        super(message);
+        this.head = head;
+    }
+
+    /**
+     * Returns whether the request line and headers were too long, rather than
+     * the body.
+     *
+     * @return true if the head of the request was too long.
+     */
+    public boolean isHead() {
+        return head;
+    }
+}
@@ -0,0 +1,428 @@
+package woodland;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Builds an HTTP response directly as UTF-8 bytes in reusable direct buffers.
+ * The response body is encoded straight into a body buffer as it is written,
+ * so its Content-Length is its real length in bytes. The status line, the
+ * constant CORS header block and the remaining headers are kept in separate
+ * buffers that are handed to a single gathering write together with the body,
+ * so a response is sent with one system call and without building any
+ * intermediate strings.
+ *
+ * A writer is reused for one response after another but is not thread safe;
+ * each connection or event loop uses its own writer at a time.
+ */
+public class ResponseWriter {
+    private static final ByteBuffer CORS_HEADERS = encode("Access-Control-Allow-Origin: *\r\n"
+            + "Access-Control-Allow-Methods: *\r\n"
+            + "Access-Control-Allow-Headers: *\r\n"
+            + "Access-Control-Max-Age: 86400\r\n");
+    private static final ByteBuffer CONNECTION_CLOSE = encode("Connection: close\r\n");
+    private static final String JSON = "application/json";
+
+    private ByteBuffer statusLine = ByteBuffer.allocateDirect(32);
+    private ByteBuffer corsHeaders = CORS_HEADERS.duplicate();
+    private ByteBuffer connectionClose = CONNECTION_CLOSE.duplicate();
+    private ByteBuffer headers = ByteBuffer.allocateDirect(512);
+    private ByteBuffer body;
+    private ByteBuffer keepAliveHeader;
+    private ByteBuffer[] response = new ByteBuffer[4];
+    private Writer bodyWriter = new BodyWriter();
+    private OutputStream bodyStream = new BodyStream();
+    private char highSurrogate;
+    private int status = 200;
+    private String contentType = JSON;
+    private String contentEncoding;
+
+    /**
+     * Creates a response writer.
+     *
+     * @param keepAliveHeader The header line, including its CRLF, sent on
+     *                        responses after which the connection stays open.
+     * @param bodyCapacity    The initial capacity of the body buffer in bytes; it
+     *                        grows when a larger body is written.
+     */
+    public ResponseWriter(String keepAliveHeader, int bodyCapacity) {
+        this.keepAliveHeader = encode(keepAliveHeader);
+        this.body = ByteBuffer.allocateDirect(bodyCapacity);
+    }
+
+    /**
+     * Encodes a constant piece of text once into a read only direct buffer.
+     *
+     * @param text The text to encode.
+     * @return A direct buffer holding the UTF-8 bytes of the text.
+     */
+    private static ByteBuffer encode(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+        return buffer.asReadOnlyBuffer();
+    }
+
+    /**
+     * Discards the response built so far and starts a new 200 response with a
+     * JSON body.
+     */
+    public void reset() {
+        body.clear();
+        highSurrogate = 0;
+        status = 200;
+        contentType = JSON;
+        contentEncoding = null;
+    }
+
+    /**
+     * Sets the status code of the response.
+     *
+     * @param status The HTTP status code.
+     */
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    /**
+     * Sets the content type of the response body.
+     *
+     * @param contentType The media type of the body.
+     */
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    /**
+     * Sets the content coding the body is written in, for a body that has been
+     * compressed already.
+     *
+     * @param contentEncoding The name of the coding, or null if the body is
+     *                        not encoded.
+     */
+    public void setContentEncoding(String contentEncoding) {
+        this.contentEncoding = contentEncoding;
+    }
+
+    /**
+     * Returns the content coding the body is written in.
+     *
+     * @return The name of the coding, or null if the body is not encoded.
+     */
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+
+    /**
+     * Compresses the body written so far in place.
+     *
+     * @param compression The compressor to use.
+     * @param encoding    {@link Compression#GZIP} or {@link Compression#DEFLATE}.
+     */
+    public void compressBody(Compression compression, int encoding) {
+        byte[] compressed = compression.compress(body.duplicate().flip(), encoding);
+        body.clear();
+        write(compressed, 0, compressed.length);
+        contentEncoding = Compression.name(encoding);
+    }
+
+    /**
+     * Returns a writer that encodes text as UTF-8 straight into the response
+     * body. The writer does not need to be closed.
+     *
+     * @return The body writer.
+     */
+    public Writer body() {
+        return bodyWriter;
+    }
+
+    /**
+     * Returns a stream that appends bytes straight to the response body. The
+     * stream does not need to be closed.
+     *
+     * @return The body stream.
+     */
+    public OutputStream bodyStream() {
+        return bodyStream;
+    }
+
+    /**
+     * Appends already encoded bytes to the response body.
+     *
+     * @param bytes  The bytes to append.
+     * @param offset The index of the first byte to append.
+     * @param length The number of bytes to append.
+     */
+    public void write(byte[] bytes, int offset, int length) {
+        ensureCapacity(length);
+        body.put(bytes, offset, length);
+    }
+
+    /**
+     * Returns the number of bytes written to the body so far.
+     *
+     * @return The body length in bytes.
+     */
+    public int getContentLength() {
+        return body.position();
+    }
+
+    /**
+     * Returns the size of the body buffer, which grows to fit the largest body
+     * written since the writer was created.
+     *
+     * @return The capacity of the body buffer in bytes.
+     */
+    public int getBodyCapacity() {
+        return body.capacity();
+    }
+
+    /**
+     * Discards the bytes written to the body after the given length.
+     *
+     * @param length The number of bytes to keep.
+     */
+    public void truncate(int length) {
+        body.position(length);
+    }
+
+    /**
+     * Copies the bytes written to the body from the given offset onwards.
+     *
+     * @param from The offset of the first byte to copy.
+     * @return A new array holding the copied bytes.
+     */
+    public byte[] copyBody(int from) {
+        byte[] bytes = new byte[body.position() - from];
+        body.get(from, bytes);
+        return bytes;
+    }
+
+    /**
+     * Completes the response and returns its parts ready to be written, in order,
+     * with a gathering write. The returned buffers stay valid until the next call
+     * to {@link #reset()}.
+     *
+     * @param keepAlive Whether the connection stays open after this response.
+     * @return The status line, the CORS headers, the remaining headers and the
+     *         body.
+     */
+    public ByteBuffer[] finish(boolean keepAlive) {
+        statusLine.clear();
+        putAscii(statusLine, "HTTP/1.1 ");
+        putNumber(statusLine, status);
+        putAscii(statusLine, "\r\n");
+        statusLine.flip();
+
+        headers.clear();
+        putAscii(headers, "Content-Type: ");
+        putAscii(headers, contentType);
+        putAscii(headers, "\r\nContent-Length: ");
+        putNumber(headers, body.position());
+        putAscii(headers, "\r\n");
+        if (contentEncoding != null) {
+            putAscii(headers, "Content-Encoding: ");
+            putAscii(headers, contentEncoding);
+            putAscii(headers, "\r\nVary: Accept-Encoding\r\n");
+        }
+        headers.put(keepAlive ? keepAliveHeader.rewind() : connectionClose.rewind());
+        putAscii(headers, "\r\n");
+        headers.flip();
+
+        response[0] = statusLine;
+        response[1] = corsHeaders.rewind();
+        response[2] = headers;
+        response[3] = body.flip();
+        return response;
+    }
+
+    /**
+     * Completes the response without an HTTP head, for protocols that frame the
+     * body themselves. The returned buffer stays valid until the next call to
+     * {@link #reset()}.
+     *
+     * @return The body, ready to be written.
+     */
+    public ByteBuffer finishBody() {
+        return body.flip();
+    }
+
+    /**
+     * Completes the head of a response whose body is streamed after it for as
+     * long as the connection stays open, such as a stream of Server-Sent Events.
+     * The head has no Content-Length, so the body ends when the connection is
+     * closed.
+     *
+     * @return The status line, the CORS headers and the remaining headers, ready
+     *         to be written with a gathering write.
+     */
+    public ByteBuffer[] finishStream() {
+        statusLine.clear();
+        putAscii(statusLine, "HTTP/1.1 ");
+        putNumber(statusLine, status);
+        putAscii(statusLine, "\r\n");
+        statusLine.flip();
+
+        headers.clear();
+        putAscii(headers, "Content-Type: ");
+        putAscii(headers, contentType);
+        putAscii(headers, "\r\nCache-Control: no-cache\r\n\r\n");
+        headers.flip();
+
+        ByteBuffer[] head = new ByteBuffer[3];
+        head[0] = statusLine;
+        head[1] = corsHeaders.rewind();
+        head[2] = headers;
+        return head;
+    }
+
+    /**
+     * Completes the response and writes all of it to a blocking channel.
+     *
+     * @param channel   The channel connected to the client.
+     * @param keepAlive Whether the connection stays open after this response.
+     * @throws IOException If writing to the client fails.
+     */
+    public void send(GatheringByteChannel channel, boolean keepAlive) throws IOException {
+        ByteBuffer[] buffers = finish(keepAlive);
+        while (buffers[2].hasRemaining() || buffers[3].hasRemaining()) {
+            channel.write(buffers);
+        }
+    }
+
+    /**
+     * Makes sure the body buffer can take the given number of further bytes,
+     * moving the body into a larger buffer if it cannot.
+     *
+     * @param bytes The number of bytes about to be written.
+     */
+    private void ensureCapacity(int bytes) {
+        if (body.remaining() < bytes) {
+            ByteBuffer grown = ByteBuffer.allocateDirect(Math.max(body.capacity() * 2, body.position() + bytes));
+            body.flip();
+            grown.put(body);
+            body = grown;
+        }
+    }
+
+    /**
+     * Writes an ASCII string into a buffer.
+     *
+     * @param buffer The buffer to write into.
+     * @param text   The ASCII text.
+     */
+    private static void putAscii(ByteBuffer buffer, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            buffer.put((byte) text.charAt(i));
+        }
+    }
+
+    /**
+     * Writes the decimal digits of a non-negative number into a buffer.
+     *
+     * @param buffer The buffer to write into.
+     * @param number The number to write.
+     */
+    private static void putNumber(ByteBuffer buffer, int number) {
+        int divisor = 1;
+        while (number / divisor >= 10) {
+            divisor *= 10;
+        }
+        while (divisor > 0) {
+            buffer.put((byte) ('0' + number / divisor % 10));
+            divisor /= 10;
+        }
+    }
+
+    /**
+     * Encodes a single UTF-16 code unit into the body, pairing surrogates that
+     * arrive in separate writes. Unpaired surrogates are written as '?', the same
+     * as {@link String#getBytes(java.nio.charset.Charset)} does.
+     *
+     * @param c The code unit to encode.
+     */
+    private void putChar(char c) {
+        if (highSurrogate != 0) {
+            char high = highSurrogate;
+            highSurrogate = 0;
+            if (Character.isLowSurrogate(c)) {
+                int codePoint = Character.toCodePoint(high, c);
+                body.put((byte) (0xF0 | (codePoint >> 18)));
+                body.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                body.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                body.put((byte) (0x80 | (codePoint & 0x3F)));
+                return;
+            }
+            body.put((byte) '?');
+        }
+        if (c < 0x80) {
+            body.put((byte) c);
+        } else if (c < 0x800) {
+            body.put((byte) (0xC0 | (c >> 6)));
+            body.put((byte) (0x80 | (c & 0x3F)));
+        } else if (Character.isHighSurrogate(c)) {
+            highSurrogate = c;
+        } else if (Character.isLowSurrogate(c)) {
+            body.put((byte) '?');
+        } else {
+            body.put((byte) (0xE0 | (c >> 12)));
+            body.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+            body.put((byte) (0x80 | (c & 0x3F)));
+        }
+    }
+
+    /**
+     * A stream that appends bytes straight to the body buffer.
+     */
+    private class BodyStream extends OutputStream {
+        @Override
+        public void write(int b) {
+            ensureCapacity(1);
+            body.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            ResponseWriter.this.write(bytes, offset, length);
+        }
+    }
+
+    /**
+     * A writer that encodes characters as UTF-8 straight into the body buffer.
+     */
+    private class BodyWriter extends Writer {
+        @Override
+        public void write(int c) {
+            ensureCapacity(4);
+            putChar((char) c);
+        }
+
+        @Override
+        public void write(char[] chars, int offset, int length) {
+            ensureCapacity(length * 3 + 1);
+            for (int i = offset; i < offset + length; i++) {
+                putChar(chars[i]);
+            }
+        }
+
+        @Override
+        public void write(String text, int offset, int length) {
+            ensureCapacity(length * 3 + 1);
+            for (int i = offset; i < offset + length; i++) {
+                putChar(text.charAt(i));
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package woodland;
+
+import java.util.Arrays;
+
+/**
+ * The squares of a board that have been used, kept row by row and sorted by
+ * column within each row. A square is found by a binary search of its row, so
+ * once a bitboard has found which square holds the first creature on a path,
+ * the square itself is a lookup of O(log n) in the number of squares used in
+ * that row, without boxing its number or following a chain of hash entries.
+ *
+ * Squares are only ever added; a square that has been used stays in the index
+ * for the rest of the game.
+ */
+public class RowIndex {
+    private static final int INITIAL_CAPACITY = 4;
+
+    private final int[][] cols;
+    private final Square[][] squares;
+    private final int[] counts;
+    private int size;
+
+    /**
+     * Creates an empty index.
+     *
+     * @param rows The number of rows of the board.
+     */
+    public RowIndex(int rows) {
+        cols = new int[rows][];
+        squares = new Square[rows][];
+        counts = new int[rows];
+    }
+
+    /**
+     * Looks up a square.
+     *
+     * @param row The row of the square.
+     * @param col The column of the square.
+     * @return The square, or null if it has not been added.
+     */
+    public Square get(int row, int col) {
+        int[] rowCols = cols[row];
+        if (rowCols == null) {
+            return null;
+        }
+        int i = Arrays.binarySearch(rowCols, 0, counts[row], col);
+        return i >= 0 ? squares[row][i] : null;
+    }
+
+    /**
+     * Adds a square that is not in the index yet, keeping its row sorted.
+     *
+     * @param square The square.
+     */
+    public void add(Square square) {
+        int row = square.row;
+        int count = counts[row];
+        if (cols[row] == null) {
+            cols[row] = new int[INITIAL_CAPACITY];
+            squares[row] = new Square[INITIAL_CAPACITY];
+        } else if (count == cols[row].length) {
+            cols[row] = Arrays.copyOf(cols[row], count * 2);
+            squares[row] = Arrays.copyOf(squares[row], count * 2);
+        }
+        int i = -Arrays.binarySearch(cols[row], 0, count, square.col) - 1;
+        System.arraycopy(cols[row], i, cols[row], i + 1, count - i);
+        System.arraycopy(squares[row], i, squares[row], i + 1, count - i);
+        cols[row][i] = square.col;
+        squares[row][i] = square;
+        counts[row] = count + 1;
+        size++;
+    }
+
+    /**
+     * Returns the number of squares in a row of the index.
+     *
+     * @param row The row.
+     * @return The number of squares of the row that have been added.
+     */
+    public int count(int row) {
+        return counts[row];
+    }
+
+    /**
+     * Returns a square of a row by its position in the row, for going through
+     * the squares of a row in order of column.
+     *
+     * @param row The row.
+     * @param i   The position of the square in the row, from 0 to
+     *            {@link #count(int)} - 1.
+     * @return The square.
+     */
+    public Square squareAt(int row, int i) {
+        return squares[row][i];
+    }
+
+    /**
+     * Returns the number of squares in the index.
+     *
+     * @return The number of squares.
+     */
+    public int size() {
+        return size;
+    }
+}
@@ -1,5 +1,10 @@
 package woodland.Spells;
 
+import java.util.HashMap;
+import java.util.Map;
+
+import woodland.JsonOutput;
+
 /**
  * Represents various types of spells in a game with their respective names and
  * descriptions.
@@ -36,8 +41,17 @@ public enum Spell {
     CHARM("Charm",
             "The charm spell allows the animal to charm a mythical creature on a square adjacent to the animal but not the square the animal is occupying. The mythical creature will not attack the charming animal for the next three turns");
 
+    private static final Map<String, Spell> BY_NAME = new HashMap<>();
+
+    static {
+        for (Spell spell : values()) {
+            BY_NAME.put(spell.name, spell);
+        }
+    }
+
     private final String name;
     private final String description;
+    private final byte[] descriptionJson;
 
     /**
      * Constructs a spell with the given name and description.
@@ -48,6 +62,7 @@ public enum Spell {
     Spell(String name, String description) {
         this.name = name;
         this.description = description;
+        this.descriptionJson = JsonOutput.member("description", description);
     }
 
     /**
@@ -67,4 +82,24 @@ public enum Spell {
     public String getDescription() {
         return description;
     }
+
+    /**
+     * Gets the description of the spell already serialized as a JSON object
+     * member, ready to be spliced into a response.
+     *
+     * @return The bytes of {@code "description":"..."}.
+     */
+    public byte[] getDescriptionJson() {
+        return descriptionJson;
+    }
+
+    /**
+     * Looks up a spell by the name clients know it by.
+     *
+     * @param name The name of the spell, for example "Heal".
+     * @return The spell with that name, or null if there is none.
+     */
+    public static Spell fromName(String name) {
+        return BY_NAME.get(name);
+    }
 }
@@ -19,6 +19,7 @@ public class Square {
     protected Spell spell;
     protected Creature creature;
     protected Animal animal;
+    private Game game;
 
     /**
      * Constructs a square with the given row and column coordinates.
@@ -34,6 +35,29 @@ public class Square {
         this.creature = null;
     }
 
+    /**
+     * Constructs a square of the given game. The square tells the game whenever
+     * its contents or visibility change, so the game can keep track of what
+     * changed between versions of its state.
+     *
+     * @param game The game the square belongs to.
+     * @param row  The row position of the square.
+     * @param col  The column position of the square.
+     */
+    public Square(Game game, int row, int col) {
+        this(row, col);
+        this.game = game;
+    }
+
+    /**
+     * Tells the game the square belongs to, if any, that the square changed.
+     */
+    private void changed() {
+        if (game != null) {
+            game.changed(this);
+        }
+    }
+
     /**
      * Returns the row position of the square.
      * 
@@ -63,6 +87,7 @@ public class Square {
 
     public void setVisible(boolean visible) {
         this.visible = visible;
+        changed();
     }
 
     /**
@@ -70,6 +95,7 @@ public class Square {
      */
     public void reveal() {
         visible = true;
+        changed();
     }
 
     /**
@@ -83,6 +109,7 @@ public class Square {
 
     public void setHasCreature(Boolean hasCreature) {
         this.hasCreature = hasCreature;
+        changed();
     }
 
     /**
@@ -112,6 +139,7 @@ public class Square {
     public void setAnimal(Animal animal) {
         this.animal = animal;
         hasAnimal = true;
+        changed();
     }
 
     /**
@@ -121,6 +149,7 @@ public class Square {
     public void removeAnimal() {
         animal = null;
         hasAnimal = false;
+        changed();
     }
 
     /**
@@ -130,6 +159,7 @@ public class Square {
     public void removeSpell() {
         spell = null;
         hasSpell = false;
+        changed();
     }
 
     /**
@@ -141,6 +171,7 @@ public class Square {
     public void setCreature(Creature creature) {
         this.creature = creature;
         hasCreature = true;
+        changed();
     }
 
     /**
@@ -179,5 +210,6 @@ public class Square {
     public void setSpell(Spell spell) {
         this.spell = spell;
         hasSpell = true;
+        changed();
     }
 }
@@ -0,0 +1,105 @@
+package woodland;
+
+import woodland.Spells.Spell;
+
+/**
+ * A square as it was when a {@link GameSnapshot} was taken. Only squares that
+ * were visible or held something are kept in a snapshot.
+ */
+public final class SquareSnapshot {
+    private final int row;
+    private final int col;
+    private final boolean visible;
+    private final Spell spell;
+    private final AnimalSnapshot animal;
+    private final CreatureSnapshot creature;
+
+    /**
+     * Creates a snapshot of a square from snapshots of what is on it.
+     *
+     * @param square   The square.
+     * @param animal   The snapshot of the animal on the square, or null.
+     * @param creature The snapshot of the creature on the square, or null.
+     */
+    SquareSnapshot(Square square, AnimalSnapshot animal, CreatureSnapshot creature) {
+        this.row = square.row;
+        this.col = square.col;
+        this.visible = square.visible;
+        this.spell = square.spell;
+        this.animal = animal;
+        this.creature = creature;
+    }
+
+    /**
+     * Returns the row of the square.
+     *
+     * @return The row.
+     */
+    public int getRow() {
+        return row;
+    }
+
+    /**
+     * Returns the column of the square.
+     *
+     * @return The column.
+     */
+    public int getCol() {
+        return col;
+    }
+
+    /**
+     * Returns whether the square had been revealed.
+     *
+     * @return true if the square was visible.
+     */
+    public boolean isVisible() {
+        return visible;
+    }
+
+    /**
+     * Returns the spell lying on the square.
+     *
+     * @return The spell, or null if there was none.
+     */
+    public Spell getSpell() {
+        return spell;
+    }
+
+    /**
+     * Returns the animal standing on the square.
+     *
+     * @return The animal, or null if there was none.
+     */
+    public AnimalSnapshot getAnimal() {
+        return animal;
+    }
+
+    /**
+     * Returns the creature on the square.
+     *
+     * @return The creature, or null if there was none.
+     */
+    public CreatureSnapshot getCreature() {
+        return creature;
+    }
+
+    /**
+     * Writes the animal and the creature on the square, if the square was
+     * visible, the same as the game wrote the square when the snapshot was
+     * taken.
+     *
+     * @param out  The output to write to, positioned inside an array.
+     * @param lean Whether to leave the descriptions out.
+     */
+    public void writeJson(JsonOutput out, boolean lean) {
+        if (visible) {
+            if (animal != null) {
+                animal.writeJson(out, lean);
+            }
+            if (creature != null) {
+                creature.writeJson(out, lean);
+            }
+        }
+    }
+}
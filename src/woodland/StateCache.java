@@ -0,0 +1,101 @@
+package woodland;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Caches the serialized response body of a game's state for the state version
+ * it was serialized at. While the game does not change, every client polling
+ * its state is answered by copying the cached bytes instead of walking the
+ * board and rebuilding the JSON again. Any change to the game moves it to a
+ * new version, which makes the cached bytes stale without any explicit
+ * invalidation.
+ *
+ * Each version can also hold the serialized state compressed in each of the
+ * content codings, so a state is compressed at most once per coding.
+ */
+public class StateCache {
+    private volatile Entry entry;
+
+    /**
+     * The serialized state at one version. The version and bytes of an entry
+     * never change, so readers always see a version together with its own bytes;
+     * only its compressed forms are filled in later.
+     */
+    private static class Entry {
+        private final long version;
+        private final byte[] bytes;
+        private final AtomicReferenceArray<byte[]> encoded = new AtomicReferenceArray<>(3);
+
+        /**
+         * Creates an entry.
+         *
+         * @param version The state version the bytes were serialized at.
+         * @param bytes   The serialized state.
+         */
+        Entry(long version, byte[] bytes) {
+            this.version = version;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Returns the serialized state for the given version, if it is cached.
+     *
+     * @param version The state version wanted.
+     * @return The serialized state, or null if that version is not cached. The
+     *         returned array must not be modified.
+     */
+    public byte[] get(long version) {
+        Entry current = entry;
+        if (current != null && current.version == version) {
+            return current.bytes;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the serialized state for the given version compressed in a content
+     * coding, if it is cached.
+     *
+     * @param version  The state version wanted.
+     * @param encoding {@link Compression#GZIP} or {@link Compression#DEFLATE}.
+     * @return The compressed state, or null if it is not cached. The returned
+     *         array must not be modified.
+     */
+    public byte[] getEncoded(long version, int encoding) {
+        Entry current = entry;
+        if (current != null && current.version == version) {
+            return current.encoded.get(encoding);
+        }
+        return null;
+    }
+
+    /**
+     * Caches the compressed form of the state for a version. Nothing is cached
+     * if the uncompressed state cached is not that version.
+     *
+     * @param version  The state version the bytes were serialized at.
+     * @param encoding {@link Compression#GZIP} or {@link Compression#DEFLATE}.
+     * @param bytes    The compressed state, which must not be modified
+     *                 afterwards.
+     */
+    public void putEncoded(long version, int encoding, byte[] bytes) {
+        Entry current = entry;
+        if (current != null && current.version == version) {
+            current.encoded.set(encoding, bytes);
+        }
+    }
+
+    /**
+     * Caches the serialized state for a version, replacing any older entry.
+     *
+     * @param version The state version the bytes were serialized at.
+     * @param bytes   The serialized state, which must not be modified afterwards.
+     */
+    public void put(long version, byte[] bytes) {
+        Entry current = entry;
+        if (current == null || current.version <= version) {
+            entry = new Entry(version, bytes);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package woodland;
+
+import java.util.Arrays;
+
+/**
+ * Records what a game needs to take back the moves made on it with
+ * {@link Game#make(GameCommand)}. Before a move changes a square, an animal or
+ * a creature, the game pushes an entry holding the old value; undoing the move
+ * pops the entries back to the mark pushed when the move was made, newest
+ * first.
+ *
+ * An entry is a kind, the thing that changed, one reference and one number,
+ * kept in parallel arrays allocated up front. The arrays only grow when a
+ * search goes deeper than they have room for, so a search that makes and
+ * undoes moves over and over allocates nothing for the stack after the first
+ * few moves.
+ */
+public class UndoStack {
+    /**
+     * A square's visibility and animal. The reference is the animal, the
+     * number has bit 0 set if the square was visible and bit 1 set if it held
+     * an animal.
+     */
+    public static final int SQUARE = 0;
+    /**
+     * An animal's life points. The number is the life points.
+     */
+    public static final int LIFE = 1;
+    /**
+     * The square an animal stands on. The reference is the square.
+     */
+    public static final int ANIMAL_SQUARE = 2;
+    /**
+     * How many of a spell an animal holds. The reference is the spell, the
+     * number is the count, 0 if the animal held none.
+     */
+    public static final int SPELL_COUNT = 3;
+    /**
+     * How many turns a creature stays charmed by an animal. The reference is
+     * the animal, the number is the turns, 0 if it was not charmed.
+     */
+    public static final int CHARM = 4;
+    /**
+     * A shield an animal put on a creature. The reference is the animal; undoing
+     * the entry takes one of the animal's shields off the creature again.
+     */
+    public static final int SHIELD = 5;
+    /**
+     * Whether a creature is confused and by whom. The reference is the animal
+     * that confused it, the number is 1 if it was confused.
+     */
+    public static final int CONFUSE = 6;
+    /**
+     * The turn fields of the game. The thing that changed is the status
+     * message, the reference is the turn type and the number holds the animal
+     * indexes and turn flags, as packed by the game.
+     */
+    public static final int TURN = 7;
+
+    private static final int MARK_CAPACITY = 64;
+
+    private int[] kinds;
+    private Object[] owners;
+    private Object[] refs;
+    private int[] values;
+    private int size;
+    private int[] marks = new int[MARK_CAPACITY];
+    private int depth;
+
+    /**
+     * Creates an empty stack.
+     *
+     * @param capacity The number of entries room is made for up front.
+     */
+    public UndoStack(int capacity) {
+        kinds = new int[capacity];
+        owners = new Object[capacity];
+        refs = new Object[capacity];
+        values = new int[capacity];
+    }
+
+    /**
+     * Marks the start of a move. Every entry pushed until the mark is popped
+     * belongs to the move.
+     */
+    public void mark() {
+        if (depth == marks.length) {
+            marks = Arrays.copyOf(marks, depth * 2);
+        }
+        marks[depth++] = size;
+    }
+
+    /**
+     * Removes the newest mark.
+     *
+     * @return The number of entries there were when the mark was pushed; the
+     *         entries from there on belong to the move being undone.
+     * @throws IllegalStateException If no move has been made.
+     */
+    public int popMark() {
+        if (depth == 0) {
+            throw new IllegalStateException("No move to undo");
+        }
+        return marks[--depth];
+    }
+
+    /**
+     * Returns the number of moves made and not yet undone.
+     *
+     * @return The number of marks on the stack.
+     */
+    public int depth() {
+        return depth;
+    }
+
+    /**
+     * Pushes an entry.
+     *
+     * @param kind  What changed, one of the kinds above.
+     * @param owner The square, animal or creature that changed.
+     * @param ref   The reference the kind keeps, or null.
+     * @param value The number the kind keeps, or 0.
+     */
+    public void push(int kind, Object owner, Object ref, int value) {
+        if (size == kinds.length) {
+            int capacity = Math.max(size * 2, 16);
+            kinds = Arrays.copyOf(kinds, capacity);
+            owners = Arrays.copyOf(owners, capacity);
+            refs = Arrays.copyOf(refs, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        kinds[size] = kind;
+        owners[size] = owner;
+        refs[size] = ref;
+        values[size] = value;
+        size++;
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return The number of entries.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Drops the entries from the given one on, letting go of what they refer
+     * to.
+     *
+     * @param newSize The number of entries kept.
+     */
+    public void truncate(int newSize) {
+        Arrays.fill(owners, newSize, size, null);
+        Arrays.fill(refs, newSize, size, null);
+        size = newSize;
+    }
+
+    /**
+     * Returns the kind of an entry.
+     *
+     * @param i The index of the entry.
+     * @return The kind.
+     */
+    public int kind(int i) {
+        return kinds[i];
+    }
+
+    /**
+     * Returns the square, animal or creature an entry is about.
+     *
+     * @param i The index of the entry.
+     * @return The thing that changed.
+     */
+    public Object owner(int i) {
+        return owners[i];
+    }
+
+    /**
+     * Returns the reference an entry keeps.
+     *
+     * @param i The index of the entry.
+     * @return The reference, or null.
+     */
+    public Object ref(int i) {
+        return refs[i];
+    }
+
+    /**
+     * Returns the number an entry keeps.
+     *
+     * @param i The index of the entry.
+     * @return The number.
+     */
+    public int value(int i) {
+        return values[i];
+    }
+}
@@ -0,0 +1,298 @@
+package woodland;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+/**
+ * Reads and writes the frames of an RFC 6455 WebSocket connection. A message
+ * sent by the client may be split over several frames; {@link #read()} joins
+ * them and answers pings on its own, so the caller only sees whole text
+ * messages. Frames sent by the server are never masked or fragmented.
+ *
+ * A WebSocket is used by one thread at a time.
+ */
+public class WebSocket {
+    /**
+     * The opcode of a frame continuing a fragmented message.
+     */
+    public static final int CONTINUATION = 0x0;
+    /**
+     * The opcode of a text frame.
+     */
+    public static final int TEXT = 0x1;
+    /**
+     * The opcode of a binary frame.
+     */
+    public static final int BINARY = 0x2;
+    /**
+     * The opcode of a close frame.
+     */
+    public static final int CLOSE = 0x8;
+    /**
+     * The opcode of a ping frame.
+     */
+    public static final int PING = 0x9;
+    /**
+     * The opcode of a pong frame.
+     */
+    public static final int PONG = 0xA;
+
+    /**
+     * The close status sent in answer to a client closing the connection.
+     */
+    public static final int NORMAL = 1000;
+    /**
+     * The close status sent when the client breaks the protocol.
+     */
+    public static final int PROTOCOL_ERROR = 1002;
+    /**
+     * The close status sent when the client sends a kind of message the server
+     * does not accept.
+     */
+    public static final int UNSUPPORTED_DATA = 1003;
+    /**
+     * The close status sent when the client sends a message that is too big.
+     */
+    public static final int MESSAGE_TOO_BIG = 1009;
+
+    private static final String ACCEPT_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+    private static final int MAX_CONTROL_PAYLOAD = 125;
+
+    private InputStream in;
+    private GatheringByteChannel out;
+    private int maxMessageSize;
+    private ByteBuffer header = ByteBuffer.allocate(14);
+    private int closeStatus;
+
+    /**
+     * Creates a WebSocket over a connection that has completed the opening
+     * handshake.
+     *
+     * @param in             The stream connected to the client.
+     * @param out            The channel connected to the client.
+     * @param maxMessageSize The largest message accepted from the client, in
+     *                       bytes.
+     */
+    public WebSocket(InputStream in, GatheringByteChannel out, int maxMessageSize) {
+        this.in = in;
+        this.out = out;
+        this.maxMessageSize = maxMessageSize;
+    }
+
+    /**
+     * Checks whether a request asks to upgrade its connection to a WebSocket.
+     *
+     * @param request The request.
+     * @return true if the request is a WebSocket opening handshake, false
+     *         otherwise.
+     */
+    public static boolean isUpgrade(HttpRequest request) {
+        String upgrade = request.getHeader("upgrade");
+        return request.getMethod().equals("GET") && upgrade != null && upgrade.equalsIgnoreCase("websocket")
+                && request.getHeader("sec-websocket-key") != null;
+    }
+
+    /**
+     * Builds the response that completes the opening handshake.
+     *
+     * @param request The handshake request.
+     * @return The bytes of the 101 response.
+     */
+    public static byte[] handshake(HttpRequest request) {
+        String accept;
+        try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            byte[] digest = sha1.digest((request.getHeader("sec-websocket-key").trim() + ACCEPT_GUID)
+                    .getBytes(StandardCharsets.ISO_8859_1));
+            accept = Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+        return ("HTTP/1.1 101 Switching Protocols\r\n"
+                + "Upgrade: websocket\r\n"
+                + "Connection: Upgrade\r\n"
+                + "Sec-WebSocket-Accept: " + accept + "\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Reads the next text message from the client. Pings are answered while
+     * waiting. If the client closes the connection, sends a binary message, or
+     * breaks the protocol, a close frame is sent back and null is returned. A
+     * frame breaks the protocol if it is not masked, sets a reserved bit, gives
+     * a 64-bit length with the top bit set, or is a control frame that is
+     * fragmented or carries more than 125 bytes.
+     *
+     * @return The text of the message, or null if the connection is closing.
+     * @throws IOException If reading from or writing to the client fails.
+     */
+    public String read() throws IOException {
+        ByteArrayOutputStream message = null;
+        while (true) {
+            int first = in.read();
+            if (first < 0) {
+                return null;
+            }
+            int second = readByte();
+            boolean fin = (first & 0x80) != 0;
+            int opcode = first & 0x0F;
+            boolean masked = (second & 0x80) != 0;
+            long length = second & 0x7F;
+            if (length == 126) {
+                length = (readByte() << 8) | readByte();
+            } else if (length == 127) {
+                length = 0;
+                for (int i = 0; i < 8; i++) {
+                    length = (length << 8) | readByte();
+                }
+            }
+
+            boolean control = (opcode & 0x08) != 0;
+            if (!masked || (first & 0x70) != 0 || length < 0
+                    || (control && (!fin || length > MAX_CONTROL_PAYLOAD))) {
+                close(PROTOCOL_ERROR);
+                return null;
+            }
+            if (length > maxMessageSize || (message != null && message.size() + length > maxMessageSize)) {
+                close(MESSAGE_TOO_BIG);
+                return null;
+            }
+            byte[] payload = readPayload((int) length);
+
+            if (opcode == PING) {
+                write(PONG, payload, 0, payload.length);
+            } else if (opcode == PONG) {
+                continue;
+            } else if (opcode == CLOSE) {
+                close(NORMAL);
+                return null;
+            } else if (opcode == TEXT && message == null) {
+                if (fin) {
+                    return new String(payload, StandardCharsets.UTF_8);
+                }
+                message = new ByteArrayOutputStream();
+                message.write(payload);
+            } else if (opcode == CONTINUATION && message != null) {
+                message.write(payload);
+                if (fin) {
+                    return message.toString(StandardCharsets.UTF_8);
+                }
+            } else if (opcode == BINARY) {
+                close(UNSUPPORTED_DATA);
+                return null;
+            } else {
+                close(PROTOCOL_ERROR);
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Sends a text message whose UTF-8 bytes are in the given buffer, with one
+     * gathering write of the frame header and the bytes.
+     *
+     * @param text The remaining bytes of the buffer are sent.
+     * @throws IOException If writing to the client fails.
+     */
+    public void sendText(ByteBuffer text) throws IOException {
+        putHeader(TEXT, text.remaining());
+        ByteBuffer[] frame = {header, text};
+        while (text.hasRemaining() || header.hasRemaining()) {
+            out.write(frame);
+        }
+    }
+
+    /**
+     * Sends a close frame with the given status, unless one has been sent
+     * already.
+     *
+     * @param status The close status.
+     * @throws IOException If writing to the client fails.
+     */
+    public void close(int status) throws IOException {
+        if (closeStatus != 0) {
+            return;
+        }
+        closeStatus = status;
+        byte[] payload = {(byte) (status >> 8), (byte) status};
+        write(CLOSE, payload, 0, payload.length);
+    }
+
+    /**
+     * Sends a single unfragmented frame.
+     *
+     * @param opcode  The opcode of the frame.
+     * @param payload The bytes to send.
+     * @param offset  The index of the first byte to send.
+     * @param length  The number of bytes to send.
+     * @throws IOException If writing to the client fails.
+     */
+    private void write(int opcode, byte[] payload, int offset, int length) throws IOException {
+        putHeader(opcode, length);
+        ByteBuffer[] frame = {header, ByteBuffer.wrap(payload, offset, length)};
+        while (frame[1].hasRemaining() || header.hasRemaining()) {
+            out.write(frame);
+        }
+    }
+
+    /**
+     * Fills the header buffer with the header of an unmasked final frame.
+     *
+     * @param opcode The opcode of the frame.
+     * @param length The length of the payload in bytes.
+     */
+    private void putHeader(int opcode, int length) {
+        header.clear();
+        header.put((byte) (0x80 | opcode));
+        if (length < 126) {
+            header.put((byte) length);
+        } else if (length <= 0xFFFF) {
+            header.put((byte) 126);
+            header.putShort((short) length);
+        } else {
+            header.put((byte) 127);
+            header.putLong(length);
+        }
+        header.flip();
+    }
+
+    /**
+     * Reads and unmasks the masking key and payload of a frame.
+     *
+     * @param length The length of the payload in bytes.
+     * @return The unmasked payload.
+     * @throws IOException If reading from the client fails.
+     */
+    private byte[] readPayload(int length) throws IOException {
+        byte[] mask = in.readNBytes(4);
+        byte[] payload = in.readNBytes(length);
+        if (mask.length < 4 || payload.length < length) {
+            throw new EOFException("Connection closed in the middle of a frame");
+        }
+        for (int i = 0; i < length; i++) {
+            payload[i] ^= mask[i & 3];
+        }
+        return payload;
+    }
+
+    /**
+     * Reads a single byte that must be there.
+     *
+     * @return The byte, from 0 to 255.
+     * @throws IOException If reading from the client fails or the stream ends.
+     */
+    private int readByte() throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException("Connection closed in the middle of a frame");
+        }
+        return b;
+    }
+}
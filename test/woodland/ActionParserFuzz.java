@@ -0,0 +1,190 @@
+package woodland;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+import java.util.Random;
+
+/**
+ * Checks the promise of {@link ActionParser}: when it accepts a body it
+ * decodes the same command as the general parser, {@link GameCommand#parse(String)},
+ * which reads the body with {@code Json.createReader}. Bodies are made from a
+ * few well formed actions, some generated with random names, numbers, spacing
+ * and field order, and then mutated by inserting, replacing and deleting
+ * bytes. Every body the fast parser accepts is decoded by the general parser
+ * too and the two commands are compared field by field; a body the general
+ * parser rejects must not be accepted. Bodies the fast parser declines are
+ * decoded by the general parser on the server, so they cannot differ.
+ *
+ * The run is seeded and bounded, so it is the same every time. Build it as
+ * described in {@link JsonParityCheck} and run it with:
+ * <pre>
+ * java -cp out:src/javax.json-1.0.jar woodland.ActionParserFuzz [bodies] [seed]
+ * </pre>
+ * It exits with status 1 if any body decodes differently.
+ */
+public class ActionParserFuzz {
+    private static final String[] ANIMALS = {"Rabbit", "Fox", "Deer", "Owl", "Badger", "Cat", "fox"};
+    private static final String[] SPELLS = {"Detect", "Heal", "Shield", "Confuse", "Charm", "Fly", "heal"};
+    private static final String[] ACTIONS = {"move", "spell", "pass", "Move"};
+    private static final String[] SPACES = {"", "", " ", "\n", "\t", "\r\n  "};
+    private static final String[] NUMBERS = {"0", "-0", "7", "-1", "19", "010", "1.0", "2e1", "123456789",
+        "1234567890", "-2147483648", "99999999999", "\"3\"", "null", "true"};
+    private static final String[] SAMPLES = {
+        "{\"action\":\"move\",\"animal\":\"Fox\",\"toSquare\":{\"row\":3,\"col\":4}}",
+        "{\"action\": \"spell\", \"animal\": \"Owl\", \"spell\": \"Heal\"}",
+        " {\n\t\"animal\":\"Badger\" , \"action\":\"move\",\"toSquare\":{ \"col\" : 19 , \"row\":-2 } } ",
+        "{\"action\":\"pass\",\"animal\":\"Rabbit\"}",
+        "{\"action\":\"spell\",\"animal\":\"Deer\",\"spell\":\"Confuse\",\"toSquare\":{\"row\":1,\"col\":1}}",
+        "{\"action\":\"move\",\"animal\":\"Fox\",\"toSquare\":{\"row\":3,\"col\":4},\"action\":\"spell\"}",
+        "{\"action\":\"sp\\u0065ll\",\"animal\":\"Owl\",\"spell\":\"Detect\"}",
+    };
+    private static final byte[] ALPHABET = "{}[]\":,.-+eE0123456789 \t\nactionmvespllFoxOwlHea\\u00e9toSquarewcl"
+            .getBytes(StandardCharsets.ISO_8859_1);
+
+    /**
+     * Runs the fuzzer.
+     *
+     * @param args The number of bodies to try, 500000 by default, and the seed,
+     *             7 by default.
+     */
+    public static void main(String[] args) {
+        int bodies = args.length > 0 ? Integer.parseInt(args[0]) : 500000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 7;
+        Random random = new Random(seed);
+        int accepted = 0;
+        int mismatches = 0;
+        for (int i = 0; i < bodies; i++) {
+            byte[] body = mutate(random.nextBoolean() ? generate(random)
+                    : SAMPLES[random.nextInt(SAMPLES.length)].getBytes(StandardCharsets.UTF_8), random);
+            GameCommand fast = ActionParser.parse(body);
+            if (fast == null) {
+                continue;
+            }
+            accepted++;
+            String general = general(body);
+            if (!general.equals(describe(fast))) {
+                mismatches++;
+                if (mismatches <= 10) {
+                    System.out.println("Mismatch for " + HexFormat.of().formatHex(body) + ": fast "
+                            + describe(fast) + ", general " + general);
+                }
+            }
+        }
+        System.out.println("Action parser fuzz: " + bodies + " bodies from seed " + seed + ", " + accepted
+                + " decoded in place, " + mismatches + " mismatches");
+        if (mismatches > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Makes up an action body from random parts, most of them in the schema.
+     *
+     * @param random The source of the choices.
+     * @return The UTF-8 bytes of the body.
+     */
+    private static byte[] generate(Random random) {
+        String[] fields = {
+            "\"action\"" + colon(random) + "\"" + pick(ACTIONS, random) + "\"",
+            "\"animal\"" + colon(random) + "\"" + pick(ANIMALS, random) + "\"",
+            "\"spell\"" + colon(random) + "\"" + pick(SPELLS, random) + "\"",
+            "\"toSquare\"" + colon(random) + "{" + pick(SPACES, random) + "\"row\"" + colon(random)
+                    + pick(NUMBERS, random) + "," + pick(SPACES, random) + "\"col\"" + colon(random)
+                    + pick(NUMBERS, random) + pick(SPACES, random) + "}",
+        };
+        for (int i = fields.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            String field = fields[i];
+            fields[i] = fields[j];
+            fields[j] = field;
+        }
+        StringBuilder body = new StringBuilder(pick(SPACES, random)).append('{');
+        int count = 1 + random.nextInt(fields.length);
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                body.append(',');
+            }
+            body.append(pick(SPACES, random)).append(fields[i]).append(pick(SPACES, random));
+        }
+        return body.append('}').append(pick(SPACES, random)).toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Applies up to three random edits to a body: replacing, inserting or
+     * deleting a byte, mostly from the characters JSON is made of.
+     *
+     * @param body   The body.
+     * @param random The source of the choices.
+     * @return The edited body.
+     */
+    private static byte[] mutate(byte[] body, Random random) {
+        int edits = random.nextInt(4);
+        for (int k = 0; k < edits; k++) {
+            int op = random.nextInt(3);
+            int at = random.nextInt(body.length + 1);
+            byte c = random.nextInt(10) == 0 ? (byte) random.nextInt(256) : ALPHABET[random.nextInt(ALPHABET.length)];
+            if (op == 0 && at < body.length) {
+                body[at] = c;
+            } else if (op == 1) {
+                byte[] longer = new byte[body.length + 1];
+                System.arraycopy(body, 0, longer, 0, at);
+                longer[at] = c;
+                System.arraycopy(body, at, longer, at + 1, body.length - at);
+                body = longer;
+            } else if (at < body.length) {
+                byte[] shorter = new byte[body.length - 1];
+                System.arraycopy(body, 0, shorter, 0, at);
+                System.arraycopy(body, at + 1, shorter, at, body.length - at - 1);
+                body = shorter;
+            }
+        }
+        return body;
+    }
+
+    /**
+     * Decodes a body with the general parser.
+     *
+     * @param body The UTF-8 bytes of the body.
+     * @return The decoded command described, or the exception it threw.
+     */
+    private static String general(byte[] body) {
+        try {
+            return describe(GameCommand.parse(new String(body, StandardCharsets.UTF_8)));
+        } catch (RuntimeException e) {
+            return "rejected with " + e.getClass().getSimpleName();
+        }
+    }
+
+    /**
+     * Describes every field of a command, so two commands can be compared.
+     *
+     * @param command The command.
+     * @return The description.
+     */
+    private static String describe(GameCommand command) {
+        return command.getType() + " " + command.getAnimalName() + "/" + command.getAnimal() + " to "
+                + command.getRow() + "," + command.getCol() + " spell " + command.getSpellName() + "/"
+                + command.getSpell();
+    }
+
+    /**
+     * Makes a name separator with random spacing around it.
+     *
+     * @param random The source of the choices.
+     * @return The separator.
+     */
+    private static String colon(Random random) {
+        return pick(SPACES, random) + ":" + pick(SPACES, random);
+    }
+
+    /**
+     * Picks one of the given strings.
+     *
+     * @param choices The strings.
+     * @param random  The source of the choice.
+     * @return The string picked.
+     */
+    private static String pick(String[] choices, Random random) {
+        return choices[random.nextInt(choices.length)];
+    }
+}
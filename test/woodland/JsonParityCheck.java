@@ -0,0 +1,152 @@
+package woodland;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Random;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonWriter;
+
+import woodland.Animals.Animal;
+import woodland.Spells.Spell;
+
+/**
+ * Checks that the streaming JSON output of the game state is byte for byte the
+ * same as the tree built by {@link GameServer#getGameStateAsJson(Game)} and
+ * written with a JsonWriter. Games are played from a range of seeds with
+ * random moves and spells, and every state reached is written both ways: the
+ * whole state through {@link GameServer#writeGameStateJson}, which goes through
+ * a snapshot, and the board alone through {@link Game#writeJson}, which reads
+ * the live game.
+ *
+ * Build and run it from the repository root with:
+ * <pre>
+ * javac -cp src/javax.json-1.0.jar -d out $(find src test -name '*.java')
+ * java -cp out:src/javax.json-1.0.jar woodland.JsonParityCheck [seeds] [turns]
+ * </pre>
+ * It exits with status 1 on the first state whose outputs differ.
+ */
+public class JsonParityCheck {
+    private static final String[] SPELLS = {"Detect", "Heal", "Shield", "Confuse", "Charm"};
+
+    /**
+     * Plays the games and compares the outputs of every state.
+     *
+     * @param args The number of seeds, 40 by default, and the number of turns
+     *             played from each, 120 by default.
+     * @throws Exception If a request cannot be handled.
+     */
+    public static void main(String[] args) throws Exception {
+        int seeds = args.length > 0 ? Integer.parseInt(args[0]) : 40;
+        int turns = args.length > 1 ? Integer.parseInt(args[1]) : 120;
+        int states = 0;
+        for (int seed = 0; seed < seeds; seed++) {
+            GameServer server = new GameServer(0, seed);
+            Game game = server.getRegistry().get("default").getGame();
+            for (Animal animal : game.getAnimals()) {
+                for (Spell spell : Spell.values()) {
+                    animal.addSpell(spell);
+                }
+                game.changed(animal.getSquare());
+            }
+            ResponseWriter out = new ResponseWriter("Connection: keep-alive\r\n", 65536);
+            Random random = new Random(seed);
+            for (int turn = 0; turn <= turns; turn++) {
+                check(server, game, seed, turn);
+                states++;
+                out.reset();
+                try {
+                    server.handleRequest(new HttpRequest("POST", "/game", "HTTP/1.1", Map.of(), action(game, random)),
+                            out);
+                } catch (RuntimeException e) {
+                    out.reset();
+                    server.sendFailure(out, e);
+                }
+            }
+        }
+        System.out.println("JSON parity: " + states + " states from " + seeds + " seeds are the same");
+    }
+
+    /**
+     * Makes up the body of the next action: mostly moves by the animal whose
+     * turn it is, towards the middle of the board or anywhere near it, and
+     * spells now and then.
+     *
+     * @param game   The game the action is for.
+     * @param random The source of the choices.
+     * @return The JSON body of the action.
+     */
+    private static String action(Game game, Random random) {
+        String animal = random.nextInt(4) == 0 ? Game.animalName(random.nextInt(5)) : game.getCurrentAnimalName();
+        if (random.nextInt(3) == 0) {
+            return "{\"action\":\"spell\",\"animal\":\"" + animal + "\",\"spell\":\""
+                    + SPELLS[random.nextInt(SPELLS.length)] + "\"}";
+        }
+        int row = random.nextBoolean() ? 14 + random.nextInt(6) : random.nextInt(game.getRows() + 2) - 1;
+        int col = random.nextInt(game.getCols() + 2) - 1;
+        return "{\"action\":\"move\",\"animal\":\"" + animal + "\",\"toSquare\":{\"row\":" + row + ",\"col\":" + col
+                + "}}";
+    }
+
+    /**
+     * Writes the current state both ways and stops the check if they differ.
+     *
+     * @param server The server hosting the game.
+     * @param game   The game.
+     * @param seed   The seed the game was made from, for the report.
+     * @param turn   The number of turns played, for the report.
+     */
+    private static void check(GameServer server, Game game, int seed, int turn) {
+        JsonObject tree = server.getGameStateAsJson(game);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        try (JsonWriter writer = Json.createWriter(expected)) {
+            writer.writeObject(tree);
+        }
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        JsonOutput json = new JsonOutput(streamed);
+        server.writeGameStateJson(game, json, false, false);
+        json.flush();
+        compare("state", expected, streamed, seed, turn);
+
+        ByteArrayOutputStream expectedBoard = new ByteArrayOutputStream();
+        try (JsonWriter writer = Json.createWriter(expectedBoard)) {
+            writer.writeObject(Json.createObjectBuilder().add("board", tree.get("board")).build());
+        }
+        ByteArrayOutputStream streamedBoard = new ByteArrayOutputStream();
+        json = new JsonOutput(streamedBoard);
+        json.startObject();
+        game.writeJson(json, "board", false);
+        json.endObject();
+        json.flush();
+        compare("board", expectedBoard, streamedBoard, seed, turn);
+    }
+
+    /**
+     * Compares two outputs and stops the check if they differ, showing where.
+     *
+     * @param what     What was written, for the report.
+     * @param expected The output of the JsonWriter.
+     * @param streamed The streamed output.
+     * @param seed     The seed the game was made from.
+     * @param turn     The number of turns played.
+     */
+    private static void compare(String what, ByteArrayOutputStream expected, ByteArrayOutputStream streamed, int seed,
+            int turn) {
+        String want = expected.toString(StandardCharsets.UTF_8);
+        String got = streamed.toString(StandardCharsets.UTF_8);
+        if (want.equals(got)) {
+            return;
+        }
+        int at = 0;
+        while (at < want.length() && at < got.length() && want.charAt(at) == got.charAt(at)) {
+            at++;
+        }
+        System.out.println("JSON parity: the " + what + " differs for seed " + seed + " after " + turn
+                + " turns, at character " + at);
+        System.out.println("  tree:      " + want.substring(Math.max(0, at - 60), Math.min(want.length(), at + 60)));
+        System.out.println("  streamed:  " + got.substring(Math.max(0, at - 60), Math.min(got.length(), at + 60)));
+        System.exit(1);
+    }
+}